@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.services.iot.client.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.services.iot.client.core.AwsIotTopicFilter;
+
+/**
+ * This benchmark compares matching a topic against a pre-tokenized
+ * {@link AwsIotTopicFilter} with the split based matching it replaced, for
+ * exact, single-level and multi-level wildcard filters.
+ * <p>
+ * Build and run it with
+ * </p>
+ * 
+ * <pre>
+ * mvn clean package -Pbenchmarks -Dgpg.skip=true
+ * java -jar aws-iot-device-sdk-java-benchmarks/target/benchmarks.jar TopicMatchBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicMatchBenchmark {
+
+    private static final String TOPIC = "$aws/things/thermostat-0042/shadow/update/delta";
+
+    @Param({ "$aws/things/thermostat-0042/shadow/update/delta", "$aws/things/+/shadow/update/delta",
+            "$aws/things/thermostat-0042/#" })
+    private String topicFilter;
+
+    private String topic;
+    private AwsIotTopicFilter filter;
+
+    @Setup
+    public void setUp() {
+        // a copy, so the filter and topic can't be compared by reference
+        topic = new String(TOPIC);
+        filter = new AwsIotTopicFilter(topicFilter);
+    }
+
+    @Benchmark
+    public boolean splitMatch() {
+        return splitMatch(topicFilter, topic);
+    }
+
+    @Benchmark
+    public boolean filterMatch() {
+        return filter.matches(topic);
+    }
+
+    /**
+     * The split based matching used before {@link AwsIotTopicFilter}, kept
+     * here as the baseline.
+     */
+    private static boolean splitMatch(String topicFilter, String topic) {
+        if (topicFilter == null || topic == null) {
+            return false;
+        }
+
+        String[] filterTokens = topicFilter.split("/");
+        String[] topicTokens = topic.split("/");
+        if (filterTokens.length > topicTokens.length) {
+            return false;
+        }
+
+        for (int i = 0; i < filterTokens.length; i++) {
+            if (filterTokens[i].equals("#")) {
+                // '#' must be the last character
+                return ((i + 1) == filterTokens.length);
+            }
+
+            if (!(filterTokens[i].equals(topicTokens[i]) || filterTokens[i].equals("+"))) {
+                return false;
+            }
+        }
+
+        return (filterTokens.length == topicTokens.length);
+    }
+
+}
@@ -0,0 +1,477 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.codegen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * This annotation processor generates a codec for each device class with
+ * fields annotated with {@code AWSIotDeviceProperty}. The codec writes the
+ * reported properties with a {@code JsonGenerator} and applies shadow deltas
+ * with a {@code JsonParser}, calling the getters and setters directly, so the
+ * device is serialized without any reflection.
+ * <p>
+ * The codec of a device class is named after the binary name of the class
+ * with {@code _AwsIotCodec} appended, and it's picked up by the SDK when the
+ * device is created. Device classes the processor hasn't seen, e.g. because
+ * it wasn't on the compiler's class path, keep using reflection.
+ * </p>
+ * <p>
+ * The processor also registers the generated codecs for reflective
+ * instantiation in {@code META-INF/native-image}, so they're found in
+ * GraalVM native images without further configuration.
+ * </p>
+ */
+@SupportedAnnotationTypes(AwsIotDeviceCodecProcessor.PROPERTY_ANNOTATION)
+public class AwsIotDeviceCodecProcessor extends AbstractProcessor {
+
+    static final String PROPERTY_ANNOTATION = "com.amazonaws.services.iot.client.AWSIotDeviceProperty";
+
+    private static final String DEVICE_CLASS = "com.amazonaws.services.iot.client.shadow.AbstractAwsIotDevice";
+    private static final String PUBLIC_DEVICE_CLASS = "com.amazonaws.services.iot.client.AWSIotDevice";
+    private static final String CODEC_SUFFIX = "_AwsIotCodec";
+    private static final String NATIVE_IMAGE_CONFIG = "META-INF/native-image/com.amazonaws/aws-iot-device-codecs/"
+            + "reflect-config.json";
+
+    private final Set<String> generatedCodecs = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeNativeImageConfig();
+            return false;
+        }
+
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(PROPERTY_ANNOTATION);
+        if (annotation == null) {
+            return false;
+        }
+
+        Map<TypeElement, List<VariableElement>> devices = new LinkedHashMap<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (element.getKind() != ElementKind.FIELD) {
+                continue;
+            }
+
+            TypeElement device = (TypeElement) element.getEnclosingElement();
+            List<VariableElement> fields = devices.get(device);
+            if (fields == null) {
+                fields = new ArrayList<>();
+                devices.put(device, fields);
+            }
+            fields.add((VariableElement) element);
+        }
+
+        for (Map.Entry<TypeElement, List<VariableElement>> device : devices.entrySet()) {
+            generateCodec(device.getKey(), device.getValue(), annotation);
+        }
+
+        return false;
+    }
+
+    private void generateCodec(TypeElement device, List<VariableElement> fields, TypeElement annotation) {
+        TypeElement deviceClass = processingEnv.getElementUtils().getTypeElement(DEVICE_CLASS);
+        if (deviceClass == null || !processingEnv.getTypeUtils().isSubtype(
+                processingEnv.getTypeUtils().erasure(device.asType()),
+                processingEnv.getTypeUtils().erasure(deviceClass.asType()))) {
+            warning(device, "Device properties are only supported in subclasses of AWSIotDevice");
+            return;
+        }
+        if (!isAccessible(device)) {
+            // the reflection based codec still works for the class
+            warning(device, "Device class isn't accessible from its package, so no codec is generated for it");
+            return;
+        }
+
+        // like the reflection based codec, the last of the properties with
+        // the same name wins
+        Map<String, Property> reported = new LinkedHashMap<>();
+        Map<String, Property> updatable = new LinkedHashMap<>();
+        boolean valid = true;
+        for (VariableElement field : fields) {
+            Property property = new Property(field, getAnnotationValues(field, annotation));
+
+            if (property.enableReport) {
+                property.getter = findGetter(device, field);
+                if (property.getter == null) {
+                    error(field, "No public getter found for device property " + field.getSimpleName());
+                    valid = false;
+                    continue;
+                }
+                reported.put(property.name, property);
+            }
+            if (property.allowUpdate) {
+                property.setter = findSetter(device, field);
+                if (property.setter == null) {
+                    error(field, "No public setter found for device property " + field.getSimpleName());
+                    valid = false;
+                    continue;
+                }
+                updatable.put(property.name, property);
+            }
+        }
+        if (!valid) {
+            return;
+        }
+
+        String deviceName = processingEnv.getElementUtils().getBinaryName(device).toString();
+        String codecName = deviceName + CODEC_SUFFIX;
+        if (!generatedCodecs.add(codecName)) {
+            return;
+        }
+
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(device);
+        String packageName = packageElement.isUnnamed() ? null : packageElement.getQualifiedName().toString();
+        String simpleName = (packageName == null) ? codecName : codecName.substring(packageName.length() + 1);
+        String deviceType = processingEnv.getTypeUtils().erasure(device.asType()).toString();
+
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(codecName, device);
+            try (Writer writer = file.openWriter()) {
+                writer.write(generateSource(packageName, simpleName, deviceType, reported.values(),
+                        updatable.values(), isDefaultShadowUpdate(device)));
+            }
+        } catch (IOException e) {
+            error(device, "Failed to generate codec " + codecName + ": " + e.getMessage());
+        }
+    }
+
+    private String generateSource(String packageName, String simpleName, String deviceType,
+            Collection<Property> reported, Collection<Property> updatable, boolean defaultShadowUpdate) {
+        StringBuilder source = new StringBuilder();
+        if (packageName != null) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+
+        source.append("import java.io.IOException;\n\n");
+        source.append("import com.amazonaws.services.iot.client.shadow.AbstractAwsIotDevice;\n");
+        source.append("import com.amazonaws.services.iot.client.shadow.AwsIotDeviceCodec;\n");
+        source.append("import com.fasterxml.jackson.core.JsonGenerator;\n");
+        source.append("import com.fasterxml.jackson.core.JsonParser;\n");
+        source.append("import com.fasterxml.jackson.core.JsonToken;\n\n");
+        source.append("/**\n * Codec for {@link ").append(deviceType).append("}, generated by ")
+                .append(AwsIotDeviceCodecProcessor.class.getSimpleName()).append(". Do not edit.\n */\n");
+        source.append("public final class ").append(simpleName).append(" implements AwsIotDeviceCodec {\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public boolean hasReportedProperties() {\n");
+        source.append("        return ").append(!reported.isEmpty()).append(";\n");
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public boolean isDefaultShadowUpdate() {\n");
+        source.append("        return ").append(defaultShadowUpdate).append(";\n");
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public void serialize(AbstractAwsIotDevice device, JsonGenerator generator)"
+                + " throws IOException {\n");
+        if (!reported.isEmpty()) {
+            source.append("        ").append(deviceType).append(" target = (").append(deviceType)
+                    .append(") device;\n");
+        }
+        for (Property property : reported) {
+            source.append("        generator.writeFieldName(").append(quote(property.name)).append(");\n");
+            source.append("        ").append(getWriteStatement(property)).append("\n");
+        }
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        // values of generic types are read by their raw class
+        source.append("    @SuppressWarnings(\"unchecked\")\n");
+        source.append("    public void applyDelta(AbstractAwsIotDevice device, JsonParser parser)"
+                + " throws IOException {\n");
+        source.append("        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {\n");
+        source.append("            parser.skipChildren();\n");
+        source.append("            return;\n");
+        source.append("        }\n\n");
+        if (!updatable.isEmpty()) {
+            source.append("        ").append(deviceType).append(" target = (").append(deviceType)
+                    .append(") device;\n");
+        }
+        source.append("        while (parser.nextToken() == JsonToken.FIELD_NAME) {\n");
+        source.append("            String name = parser.getCurrentName();\n");
+        source.append("            JsonToken token = parser.nextToken();\n");
+        source.append("            switch (name) {\n");
+        for (Property property : updatable) {
+            source.append("            case ").append(quote(property.name)).append(":\n");
+            source.append("                target.").append(property.setter.getSimpleName()).append("(")
+                    .append(getReadExpression(property.field.asType())).append(");\n");
+            source.append("                break;\n");
+        }
+        source.append("            default:\n");
+        source.append("                parser.skipChildren();\n");
+        source.append("                break;\n");
+        source.append("            }\n");
+        source.append("        }\n");
+        source.append("    }\n\n");
+
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private String getWriteStatement(Property property) {
+        String value = "target." + property.getter.getSimpleName() + "()";
+
+        switch (property.getter.getReturnType().getKind()) {
+        case BOOLEAN:
+            return "generator.writeBoolean(" + value + ");";
+        case BYTE:
+        case SHORT:
+        case INT:
+        case LONG:
+        case FLOAT:
+        case DOUBLE:
+            return "generator.writeNumber(" + value + ");";
+        default:
+            if (isType(property.getter.getReturnType(), String.class)) {
+                return "generator.writeString(" + value + ");";
+            }
+            // other types are written by the object mapper of the device
+            return "generator.writeObject(" + value + ");";
+        }
+    }
+
+    private String getReadExpression(TypeMirror type) {
+        switch (type.getKind()) {
+        case BOOLEAN:
+            return "(token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) ? parser.getBooleanValue()"
+                    + " : parser.readValueAs(boolean.class)";
+        case BYTE:
+            return "(token == JsonToken.VALUE_NUMBER_INT) ? parser.getByteValue() : parser.readValueAs(byte.class)";
+        case SHORT:
+            return "(token == JsonToken.VALUE_NUMBER_INT) ? parser.getShortValue()"
+                    + " : parser.readValueAs(short.class)";
+        case INT:
+            return "(token == JsonToken.VALUE_NUMBER_INT) ? parser.getIntValue() : parser.readValueAs(int.class)";
+        case LONG:
+            return "(token == JsonToken.VALUE_NUMBER_INT) ? parser.getLongValue() : parser.readValueAs(long.class)";
+        case FLOAT:
+            return "(token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT)"
+                    + " ? parser.getFloatValue() : parser.readValueAs(float.class)";
+        case DOUBLE:
+            return "(token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT)"
+                    + " ? parser.getDoubleValue() : parser.readValueAs(double.class)";
+        default:
+            if (isType(type, String.class)) {
+                return "(token == JsonToken.VALUE_STRING) ? parser.getText() : parser.readValueAs(String.class)";
+            }
+            // other types are read by the object mapper of the device
+            String erasure = processingEnv.getTypeUtils().erasure(type).toString();
+            return "parser.readValueAs(" + erasure + ".class)";
+        }
+    }
+
+    private boolean isDefaultShadowUpdate(TypeElement device) {
+        TypeElement stringType = processingEnv.getElementUtils().getTypeElement(String.class.getName());
+        ExecutableElement method = findMethod(device, "onShadowUpdate", stringType.asType(), false);
+        if (method == null) {
+            return true;
+        }
+
+        String declaringClass = ((TypeElement) method.getEnclosingElement()).getQualifiedName().toString();
+        return DEVICE_CLASS.equals(declaringClass) || PUBLIC_DEVICE_CLASS.equals(declaringClass);
+    }
+
+    private ExecutableElement findGetter(TypeElement device, VariableElement field) {
+        String name = capitalize(field.getSimpleName().toString());
+
+        ExecutableElement getter = findMethod(device, "get" + name, null, true);
+        if (getter == null && field.asType().getKind() == TypeKind.BOOLEAN) {
+            getter = findMethod(device, "is" + name, null, true);
+        }
+        return getter;
+    }
+
+    private ExecutableElement findSetter(TypeElement device, VariableElement field) {
+        return findMethod(device, "set" + capitalize(field.getSimpleName().toString()), field.asType(), true);
+    }
+
+    private ExecutableElement findMethod(TypeElement device, String name, TypeMirror parameterType,
+            boolean publicOnly) {
+        List<? extends Element> members = processingEnv.getElementUtils().getAllMembers(device);
+        for (ExecutableElement method : ElementFilter.methodsIn(members)) {
+            if (!method.getSimpleName().contentEquals(name) || method.getModifiers().contains(Modifier.STATIC)
+                    || (publicOnly && !method.getModifiers().contains(Modifier.PUBLIC))) {
+                continue;
+            }
+
+            List<? extends VariableElement> parameters = method.getParameters();
+            if (parameterType == null) {
+                if (parameters.isEmpty() && method.getReturnType().getKind() != TypeKind.VOID) {
+                    return method;
+                }
+            } else if (parameters.size() == 1 && processingEnv.getTypeUtils().isSameType(
+                    processingEnv.getTypeUtils().erasure(parameters.get(0).asType()),
+                    processingEnv.getTypeUtils().erasure(parameterType))) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private Map<String, Object> getAnnotationValues(Element element, TypeElement annotation) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (!processingEnv.getTypeUtils().isSameType(mirror.getAnnotationType(), annotation.asType())) {
+                continue;
+            }
+
+            Map<? extends ExecutableElement, ? extends AnnotationValue> elementValues = processingEnv
+                    .getElementUtils().getElementValuesWithDefaults(mirror);
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : elementValues
+                    .entrySet()) {
+                values.put(value.getKey().getSimpleName().toString(), value.getValue().getValue());
+            }
+        }
+        return values;
+    }
+
+    private boolean isAccessible(TypeElement type) {
+        Element element = type;
+        while (element instanceof TypeElement) {
+            TypeElement typeElement = (TypeElement) element;
+            if (typeElement.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (typeElement.getNestingKind() == NestingKind.LOCAL
+                    || typeElement.getNestingKind() == NestingKind.ANONYMOUS) {
+                return false;
+            }
+            element = typeElement.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private boolean isType(TypeMirror type, Class<?> clazz) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(clazz.getName());
+    }
+
+    private void writeNativeImageConfig() {
+        if (generatedCodecs.isEmpty()) {
+            return;
+        }
+
+        StringBuilder config = new StringBuilder("[\n");
+        String separator = "";
+        for (String codecName : generatedCodecs) {
+            config.append(separator).append("  {\"name\": ").append(quote(codecName))
+                    .append(", \"methods\": [{\"name\": \"<init>\", \"parameterTypes\": []}]}");
+            separator = ",\n";
+        }
+        config.append("\n]\n");
+
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    NATIVE_IMAGE_CONFIG);
+            try (Writer writer = file.openWriter()) {
+                writer.write(config.toString());
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Failed to write native image configuration: " + e.getMessage());
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private void warning(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * An annotated field of a device class.
+     */
+    private static class Property {
+
+        private final VariableElement field;
+        private final String name;
+        private final boolean enableReport;
+        private final boolean allowUpdate;
+        private ExecutableElement getter;
+        private ExecutableElement setter;
+
+        private Property(VariableElement field, Map<String, Object> annotationValues) {
+            this.field = field;
+
+            String annotatedName = (String) annotationValues.get("name");
+            this.name = (annotatedName != null && !annotatedName.isEmpty()) ? annotatedName
+                    : field.getSimpleName().toString();
+            this.enableReport = !Boolean.FALSE.equals(annotationValues.get("enableReport"));
+            this.allowUpdate = !Boolean.FALSE.equals(annotationValues.get("allowUpdate"));
+        }
+
+    }
+
+}
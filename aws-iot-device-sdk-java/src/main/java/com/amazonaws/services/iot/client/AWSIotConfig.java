@@ -76,6 +76,128 @@ public class AWSIotConfig {
      */
     public static final int MAX_OFFLINE_QUEUE_SIZE = 64;
 
+    /**
+     * The default value for maximum size in bytes of the durable offline
+     * publish queue. See also
+     * {@link AWSIotMqttClient#getMaxOfflineQueueBytes()}.
+     */
+    public static final long MAX_OFFLINE_QUEUE_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * The default value for the policy applied when the offline publish queue
+     * is full. See also {@link AWSIotMqttClient#getOfflineQueuePolicy()}.
+     */
+    public static final AWSIotOfflineQueuePolicy OFFLINE_QUEUE_POLICY = AWSIotOfflineQueuePolicy.REJECT_NEW;
+
+    /**
+     * The default value for coalescing the offline publish queue by topic.
+     * See also {@link AWSIotMqttClient#isOfflineQueueCoalescing()}.
+     */
+    public static final boolean OFFLINE_QUEUE_COALESCING = false;
+
+    /**
+     * The default value for the maximum rate (messages per second) of the
+     * offline queue replay. See also
+     * {@link AWSIotMqttClient#getOfflineReplayRate()}.
+     */
+    public static final int OFFLINE_REPLAY_RATE = 0;
+
+    /**
+     * The default value for the maximum rate (bytes per second) of the
+     * offline queue replay. See also
+     * {@link AWSIotMqttClient#getOfflineReplayByteRate()}.
+     */
+    public static final int OFFLINE_REPLAY_BYTE_RATE = 0;
+
+    /**
+     * The default value for the in-flight window of the offline queue replay.
+     * See also {@link AWSIotMqttClient#getOfflineReplayWindow()}.
+     */
+    public static final int OFFLINE_REPLAY_WINDOW = 0;
+
+    /**
+     * The default value for the priority between new and queued messages
+     * during the offline queue replay. See also
+     * {@link AWSIotMqttClient#getOfflineReplayPriority()}.
+     */
+    public static final AWSIotOfflineReplayPriority OFFLINE_REPLAY_PRIORITY = AWSIotOfflineReplayPriority.LIVE_FIRST;
+
+    /**
+     * The default value for maximum number of in-flight messages. See also
+     * {@link AWSIotMqttClient#getMaxInflight()}.
+     */
+    public static final int MAX_INFLIGHT = 10;
+
+    /**
+     * The default value for enabling publish backpressure. See also
+     * {@link AWSIotMqttClient#isPublishBackpressure()}.
+     */
+    public static final boolean PUBLISH_BACKPRESSURE = false;
+
+    /**
+     * The default value for the maximum number of messages waiting for an
+     * in-flight slot with publish backpressure. See also
+     * {@link AWSIotMqttClient#getPublishBackpressureQueueSize()}.
+     */
+    public static final int PUBLISH_BACKPRESSURE_QUEUE_SIZE = 1000;
+
+    /**
+     * The default value for the maximum publish rate (messages per second).
+     * See also {@link AWSIotMqttClient#getPublishRate()}.
+     */
+    public static final int PUBLISH_RATE = 0;
+
+    /**
+     * The default value for the maximum publish rate (bytes per second). See
+     * also {@link AWSIotMqttClient#getPublishByteRate()}.
+     */
+    public static final int PUBLISH_BYTE_RATE = 0;
+
+    /**
+     * The default value for the size of the publish throttle queue. See also
+     * {@link AWSIotMqttClient#getPublishThrottleQueueSize()}.
+     */
+    public static final int PUBLISH_THROTTLE_QUEUE_SIZE = 0;
+
+    /**
+     * The default value for the tick duration (milliseconds) of the timing
+     * wheel used for request timeouts. See also
+     * {@link AWSIotMqttClient#getTimeoutTickDuration()}.
+     */
+    public static final int TIMEOUT_TICK_DURATION = 100;
+
+    /**
+     * The default value for the number of buckets in the timing wheel used for
+     * request timeouts. See also
+     * {@link AWSIotMqttClient#getTimeoutWheelSize()}.
+     */
+    public static final int TIMEOUT_WHEEL_SIZE = 512;
+
+    /**
+     * The default value for running callbacks on virtual threads. See also
+     * {@link AWSIotMqttClient#isVirtualThreadCallbacks()}.
+     */
+    public static final boolean VIRTUAL_THREAD_CALLBACKS = false;
+
+    /**
+     * The default value for the maximum number of callbacks running at the
+     * same time on virtual threads. See also
+     * {@link AWSIotMqttClient#getMaxConcurrentCallbacks()}.
+     */
+    public static final int MAX_CONCURRENT_CALLBACKS = 64;
+
+    /**
+     * The default value for running the message callbacks of a subscription
+     * in order. See also {@link AWSIotMqttClient#isOrderedCallbacks()}.
+     */
+    public static final boolean ORDERED_CALLBACKS = false;
+
+    /**
+     * The default value for calling callbacks on the thread receiving the
+     * messages. See also {@link AWSIotMqttClient#isInlineCallbacks()}.
+     */
+    public static final boolean INLINE_CALLBACKS = false;
+
     /**
      * The default value for device reporting interval (milliseconds). See also
      * {@link AWSIotDevice#getReportInterval()}.
@@ -88,6 +210,26 @@ public class AWSIotConfig {
      */
     public static final boolean DEVICE_ENABLE_VERSIONING = false;
 
+    /**
+     * The default value for reporting only the device properties that have
+     * changed. See also {@link AWSIotDevice#isReportChangesOnly()}.
+     */
+    public static final boolean DEVICE_REPORT_CHANGES_ONLY = false;
+
+    /**
+     * The default value for the debounce window of reports triggered by
+     * marking properties dirty (milliseconds). See also
+     * {@link AWSIotDevice#getReportDebounce()}.
+     */
+    public static final int DEVICE_REPORT_DEBOUNCE = 100;
+
+    /**
+     * The default value for the maximum latency of reports triggered by
+     * marking properties dirty (milliseconds). See also
+     * {@link AWSIotDevice#getReportMaxLatency()}.
+     */
+    public static final int DEVICE_REPORT_MAX_LATENCY = 1000;
+
     /**
      * The default value for device reporting QoS level. See also
      * {@link AWSIotDevice#getDeviceReportQos()}.
@@ -15,6 +15,8 @@
 
 package com.amazonaws.services.iot.client;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.amazonaws.services.iot.client.shadow.AbstractAwsIotDevice;
 
 /**
@@ -130,7 +132,8 @@ public class AWSIotDevice extends AbstractAwsIotDevice {
      * Sets the device report interval in milliseconds. This value must be set
      * before the device is attached to a client via the
      * {@link AWSIotMqttClient#attach(AWSIotDevice)} call. The default interval
-     * is 3,000ms. Setting it to 0 will disable reporting.
+     * is 3,000ms. Setting it to 0 will disable reporting, except for the
+     * properties explicitly marked dirty via {@link #markDirty(String)}.
      *
      * @param reportInterval
      *            the new report interval
@@ -163,6 +166,129 @@ public class AWSIotDevice extends AbstractAwsIotDevice {
         super.setEnableVersioning(enableVersioning);
     }
 
+    /**
+     * Checks if the device reports only the properties that have changed.
+     *
+     * @return true, if only the changed properties are reported.
+     */
+    @Override
+    public boolean isReportChangesOnly() {
+        return super.isReportChangesOnly();
+    }
+
+    /**
+     * Sets whether the device reports only the properties that have changed
+     * since the last report accepted by the shadow. When enabled, the first
+     * report after the device is attached, or after its version is
+     * synchronized, contains all the properties; the following reports
+     * contain only the properties whose values differ from the last accepted
+     * report, and no report is published at all if nothing has changed. A
+     * successful {@link #delete()} or {@link #update(String)} from this device
+     * also causes the next report to contain all the properties.
+     * <p>
+     * Changes made to the reported state by other clients aren't detected
+     * unless versioning is enabled, in which case the resulting version
+     * conflict synchronizes the version again and all the properties are
+     * reported. Without versioning, properties whose values don't change
+     * aren't reported again after such changes.
+     * </p>
+     * <p>
+     * This value must be set before the device is attached to a client via the
+     * {@link AWSIotMqttClient#attach(AWSIotDevice)} call.
+     * </p>
+     *
+     * @param reportChangesOnly
+     *            true to report only the changed properties; false to report
+     *            all the properties every time.
+     */
+    @Override
+    public void setReportChangesOnly(boolean reportChangesOnly) {
+        super.setReportChangesOnly(reportChangesOnly);
+    }
+
+    /**
+     * Gets the debounce window of reports triggered by
+     * {@link #markDirty(String)}.
+     *
+     * @return the report debounce window in milliseconds.
+     */
+    @Override
+    public long getReportDebounce() {
+        return super.getReportDebounce();
+    }
+
+    /**
+     * Sets the debounce window of reports triggered by
+     * {@link #markDirty(String)} in milliseconds. The report is sent once no
+     * property has been marked dirty for this long, so that a burst of changes
+     * is sent as one report. The default window is 100ms. Setting it to 0 will
+     * send the report right away.
+     *
+     * @param reportDebounce
+     *            the new report debounce window
+     */
+    @Override
+    public void setReportDebounce(long reportDebounce) {
+        super.setReportDebounce(reportDebounce);
+    }
+
+    /**
+     * Gets the maximum latency of reports triggered by
+     * {@link #markDirty(String)}.
+     *
+     * @return the report maximum latency in milliseconds.
+     */
+    @Override
+    public long getReportMaxLatency() {
+        return super.getReportMaxLatency();
+    }
+
+    /**
+     * Sets the maximum latency of reports triggered by
+     * {@link #markDirty(String)} in milliseconds. Properties that keep being
+     * marked dirty within the debounce window are still reported no later
+     * than this long after the first of them was marked. The default latency
+     * is 1,000ms. Setting it to 0 will disable the bound.
+     *
+     * @param reportMaxLatency
+     *            the new report maximum latency
+     */
+    @Override
+    public void setReportMaxLatency(long reportMaxLatency) {
+        super.setReportMaxLatency(reportMaxLatency);
+    }
+
+    /**
+     * Marks all the device properties dirty, so that they are reported after
+     * the debounce window, without waiting for the periodic report.
+     */
+    @Override
+    public void markDirty() {
+        super.markDirty();
+    }
+
+    /**
+     * Marks a device property dirty, so that it is reported after the
+     * debounce window, without waiting for the periodic report. Properties
+     * marked dirty while the device isn't attached or connected are reported
+     * once it's connected.
+     * <p>
+     * Only the properties marked dirty are included in the report, unless
+     * {@link #isReportChangesOnly()} is enabled, in which case all the
+     * properties changed since the last accepted report are included. To
+     * report only when properties are marked dirty, set the report interval
+     * to 0 via {@link #setReportInterval(long)}.
+     * </p>
+     *
+     * @param propertyName
+     *            the name of the property in the shadow document, i.e. the
+     *            name given in {@link AWSIotDeviceProperty}, or the field name
+     */
+    @Override
+    public void markDirty(String propertyName) {
+        super.markDirty(propertyName);
+    }
+
     /**
      * Gets the MQTT QoS level for publishing the device report. The default QoS
      * is QoS 0.
@@ -324,6 +450,25 @@ public class AWSIotDevice extends AbstractAwsIotDevice {
         super.get(message, timeout);
     }
 
+    /**
+     * Retrieves the latest state stored in the thing shadow. This method
+     * returns the full JSON document, including meta data. This is a
+     * non-blocking call, so it immediately returns a future object once the
+     * operation has been queued in the system. The future is completed with
+     * the JSON document when the operation succeeded, or exceptionally with
+     * {@link AWSIotException} or {@link AWSIotTimeoutException} when it failed
+     * or timed out respectively.
+     *
+     * @param timeout
+     *            the timeout in milliseconds for the operation to be considered
+     *            timed out
+     * @return the future object of the JSON document of the device state
+     */
+    @Override
+    public CompletableFuture<String> getAsync(long timeout) {
+        return super.getAsync(timeout);
+    }
+
     /**
      * Updates the content of a thing shadow with the data provided in the
      * request. This is a blocking call, so the calling thread will be blocked
@@ -386,6 +531,26 @@ public class AWSIotDevice extends AbstractAwsIotDevice {
         super.update(message, timeout);
     }
 
+    /**
+     * Updates the content of a thing shadow with the data provided in the
+     * request. This is a non-blocking call, so it immediately returns a future
+     * object once the operation has been queued in the system. The future is
+     * completed when the operation succeeded, or exceptionally with
+     * {@link AWSIotException} or {@link AWSIotTimeoutException} when it failed
+     * or timed out respectively.
+     *
+     * @param jsonState
+     *            the JSON document of the new device state
+     * @param timeout
+     *            the timeout in milliseconds for the operation to be considered
+     *            timed out
+     * @return the future object of the operation
+     */
+    @Override
+    public CompletableFuture<Void> updateAsync(String jsonState, long timeout) {
+        return super.updateAsync(jsonState, timeout);
+    }
+
     /**
      * Deletes the content of a thing shadow. This is a blocking call, so the
      * calling thread will be blocked until the operation succeeded or failed.
@@ -443,6 +608,23 @@ public class AWSIotDevice extends AbstractAwsIotDevice {
         super.delete(message, timeout);
     }
 
+    /**
+     * Deletes the content of a thing shadow. This is a non-blocking call, so it
+     * immediately returns a future object once the operation has been queued in
+     * the system. The future is completed when the operation succeeded, or
+     * exceptionally with {@link AWSIotException} or
+     * {@link AWSIotTimeoutException} when it failed or timed out respectively.
+     *
+     * @param timeout
+     *            the timeout in milliseconds for the operation to be considered
+     *            timed out
+     * @return the future object of the operation
+     */
+    @Override
+    public CompletableFuture<Void> deleteAsync(long timeout) {
+        return super.deleteAsync(timeout);
+    }
+
     /**
      * This function handles update messages received from the shadow. By
      * default, it invokes the setter methods provided for the annotated device
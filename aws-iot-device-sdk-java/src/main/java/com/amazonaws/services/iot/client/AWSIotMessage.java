@@ -15,10 +15,10 @@
 
 package com.amazonaws.services.iot.client;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import com.amazonaws.services.iot.client.core.AwsIotMessageCallback;
-import com.amazonaws.services.iot.client.core.AwsIotRuntimeException;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -60,10 +60,21 @@ public class AWSIotMessage implements AwsIotMessageCallback {
     protected AWSIotQos qos;
 
     /**
-     * The payload of the message.
+     * The payload of the message. {@link #getPayload()} and
+     * {@link #setPayload(byte[])} copy the byte array so the message can't be
+     * modified through it; {@link #getPayloadBuffer()},
+     * {@link #getSharedPayload()} and {@link #setSharedPayload(byte[])} give
+     * access to the payload without copying it.
      */
     protected byte[] payload;
 
+    /**
+     * The string payload decoded from {@link #payload}. It's decoded lazily
+     * the first time {@link #getStringPayload()} is called, and cleared
+     * whenever the payload is set.
+     */
+    private volatile String stringPayload;
+
     /**
      * Error code for shadow methods. It's only applicable to messages returned
      * by those shadow method APIs.
@@ -151,6 +162,7 @@ public class AWSIotMessage implements AwsIotMessageCallback {
      *            the new byte array payload
      */
     public void setPayload(byte[] payload) {
+        stringPayload = null;
         if (payload == null) {
             this.payload = null;
             return;
@@ -160,20 +172,67 @@ public class AWSIotMessage implements AwsIotMessageCallback {
     }
 
     /**
-     * Gets the string payload.
+     * Gets a read-only buffer wrapping the payload. No copy of the payload is
+     * made.
      *
-     * @return the string payload
+     * @return the read-only payload buffer, or null if the message has no
+     *         payload
      */
-    public String getStringPayload() {
+    public ByteBuffer getPayloadBuffer() {
         if (payload == null) {
             return null;
         }
 
-        String str;
-        try {
-            str = new String(payload, "UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            throw new AwsIotRuntimeException(e);
+        return ByteBuffer.wrap(payload).asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets the byte array payload without copying it. The returned array is
+     * shared with the message and must not be modified.
+     *
+     * @return the byte array payload shared with the message
+     */
+    public byte[] getSharedPayload() {
+        return payload;
+    }
+
+    /**
+     * Sets the byte array payload without copying it. The message takes
+     * ownership of the array, which must not be modified afterwards.
+     *
+     * @param payload
+     *            the new byte array payload to be shared with the message
+     */
+    public void setSharedPayload(byte[] payload) {
+        this.stringPayload = null;
+        this.payload = payload;
+    }
+
+    /**
+     * Sets the payload to the one of another message without copying it. The
+     * string payload already decoded by the other message, if any, is shared
+     * as well.
+     *
+     * @param message
+     *            the message whose payload is to be shared with this message
+     */
+    public void setSharedPayload(AWSIotMessage message) {
+        this.payload = message.payload;
+        this.stringPayload = message.stringPayload;
+    }
+
+    /**
+     * Gets the string payload. The payload is decoded as UTF-8 the first time
+     * it's requested, and the same string is returned until the payload is
+     * changed.
+     *
+     * @return the string payload
+     */
+    public String getStringPayload() {
+        String str = stringPayload;
+        if (str == null && payload != null) {
+            str = new String(payload, StandardCharsets.UTF_8);
+            stringPayload = str;
         }
         return str;
     }
@@ -185,16 +244,13 @@ public class AWSIotMessage implements AwsIotMessageCallback {
      *            the new string payload
      */
     public void setStringPayload(String payload) {
+        stringPayload = null;
         if (payload == null) {
             this.payload = null;
             return;
         }
 
-        try {
-            this.payload = payload.getBytes("UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            throw new AwsIotRuntimeException(e);
-        }
+        this.payload = payload.getBytes(StandardCharsets.UTF_8);
     }
 
     /**
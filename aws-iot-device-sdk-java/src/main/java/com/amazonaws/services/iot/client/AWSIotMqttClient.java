@@ -17,8 +17,13 @@ package com.amazonaws.services.iot.client;
 
 import com.amazonaws.services.iot.client.core.AbstractAwsIotClient;
 
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+
 import javax.net.ssl.SSLSocketFactory;
 import java.security.KeyStore;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * This class is the main interface of the AWS IoT Java library. It provides
@@ -293,7 +298,9 @@ public class AWSIotMqttClient extends AbstractAwsIotClient {
      * Gets the number of client threads currently configured. Each client has
      * their own thread pool, which is used to execute user callback functions
      * as well as any timeout callback functions requested. By default, the
-     * thread pool is configured with one execution thread.
+     * thread pool is configured with one execution thread. It's not used when
+     * a thread pool is supplied through
+     * {@link #setExecutionService(ScheduledExecutorService)}.
      *
      * @return the number of client threads
      */
@@ -314,6 +321,44 @@ public class AWSIotMqttClient extends AbstractAwsIotClient {
         super.setNumOfClientThreads(numOfClientThreads);
     }
 
+    /**
+     * Gets the thread pool used to execute user callback functions and
+     * timeout callback functions. Unless one is supplied through
+     * {@link #setExecutionService(ScheduledExecutorService)}, it's created
+     * when {@link #connect()} is called and shut down when the connection is
+     * closed.
+     *
+     * @return the thread pool, or null if the client hasn't been connected
+     */
+    @Override
+    public ScheduledExecutorService getExecutionService() {
+        return super.getExecutionService();
+    }
+
+    /**
+     * Supplies the thread pool used to execute user callback functions and
+     * timeout callback functions, instead of the client creating its own. The
+     * same thread pool can be supplied to many clients, e.g. thousands of
+     * simulated devices in one process, so the number of threads no longer
+     * grows with the number of clients; the thread pool is then also used to
+     * send the MQTT keep-alive pings, and the request timeouts of idle
+     * clients cost nothing. The client never shuts down a supplied thread
+     * pool, so it's up to the application to do that once all its clients
+     * are disconnected. This value must be set before {@link #connect()} is
+     * called.
+     * <p>
+     * Note that the network I/O of each connection still uses a few threads
+     * of the underlying MQTT client, as it's blocking.
+     * </p>
+     *
+     * @param executionService
+     *            the thread pool to be used by the client
+     */
+    @Override
+    public void setExecutionService(ScheduledExecutorService executionService) {
+        super.setExecutionService(executionService);
+    }
+
     /**
      * Gets the connection timeout in milliseconds currently configured.
      * Connection timeout specifies how long the client should wait for the
@@ -502,6 +547,609 @@ public class AWSIotMqttClient extends AbstractAwsIotClient {
         super.setMaxOfflineQueueSize(maxOfflineQueueSize);
     }
 
+    /**
+     * Gets the directory of the durable offline publish queue currently
+     * configured. When it's set, the offline publish queue is stored in
+     * memory-mapped files in this directory instead of on the heap, so queued
+     * messages survive a process restart and are published, in order, once
+     * the connection is established. The maximum offline queue size still
+     * limits the number of queued messages, so it usually needs to be raised
+     * as well. By default, it's not set.
+     *
+     * @return the directory of the durable offline publish queue, or null if
+     *         the offline publish queue is kept on the heap
+     */
+    @Override
+    public String getOfflineQueueDirectory() {
+        return super.getOfflineQueueDirectory();
+    }
+
+    /**
+     * Sets the directory of the durable offline publish queue. It must not be
+     * shared with other clients. This value must be set before
+     * {@link #connect()} is called.
+     *
+     * @param offlineQueueDirectory
+     *            the directory of the durable offline publish queue, or null
+     *            to keep the offline publish queue on the heap
+     */
+    @Override
+    public void setOfflineQueueDirectory(String offlineQueueDirectory) {
+        super.setOfflineQueueDirectory(offlineQueueDirectory);
+    }
+
+    /**
+     * Gets the maximum size in bytes of the durable offline publish queue
+     * currently configured, including the topic and a few bytes of overhead
+     * for each message. When the queue is full, the offline queue policy is
+     * applied. By default, it's 64MB.
+     *
+     * @return the maximum size in bytes of the durable offline publish queue
+     */
+    @Override
+    public long getMaxOfflineQueueBytes() {
+        return super.getMaxOfflineQueueBytes();
+    }
+
+    /**
+     * Sets a new value for the maximum size in bytes of the durable offline
+     * publish queue. This value must be set before {@link #connect()} is
+     * called.
+     *
+     * @param maxOfflineQueueBytes
+     *            the new maximum size in bytes. The default value is 64MB.
+     */
+    @Override
+    public void setMaxOfflineQueueBytes(long maxOfflineQueueBytes) {
+        super.setMaxOfflineQueueBytes(maxOfflineQueueBytes);
+    }
+
+    /**
+     * Gets the policy currently configured for when the offline publish queue
+     * is full. By default, new messages are rejected, and the publish call
+     * fails. The queue can instead drop its oldest message, or its oldest QoS
+     * 0 message, to make room for the new one. Messages dropped from the queue
+     * fail through their {@link AWSIotMessage#onFailure()} callback. Dropping
+     * QoS 0 messages first is only supported by the in-memory queue; the
+     * durable queue rejects new messages under that policy.
+     *
+     * @return the offline queue policy
+     */
+    @Override
+    public AWSIotOfflineQueuePolicy getOfflineQueuePolicy() {
+        return super.getOfflineQueuePolicy();
+    }
+
+    /**
+     * Sets the policy applied when the offline publish queue is full. This
+     * value must be set before {@link #connect()} is called.
+     *
+     * @param offlineQueuePolicy
+     *            the new offline queue policy. The default value is
+     *            {@link AWSIotOfflineQueuePolicy#REJECT_NEW}.
+     */
+    @Override
+    public void setOfflineQueuePolicy(AWSIotOfflineQueuePolicy offlineQueuePolicy) {
+        super.setOfflineQueuePolicy(offlineQueuePolicy);
+    }
+
+    /**
+     * Checks whether the offline publish queue is coalesced by topic. When
+     * it's enabled, only the latest message queued for each topic is kept,
+     * which suits topics carrying the current state of something, e.g. sensor
+     * readings, where older values are of no use once the connection is back.
+     * The replaced message fails through its {@link AWSIotMessage#onFailure()}
+     * callback. It's only supported by the in-memory queue. By default, it's
+     * disabled.
+     *
+     * @return true if the offline publish queue is coalesced by topic
+     */
+    @Override
+    public boolean isOfflineQueueCoalescing() {
+        return super.isOfflineQueueCoalescing();
+    }
+
+    /**
+     * Sets whether the offline publish queue is coalesced by topic. This
+     * value must be set before {@link #connect()} is called.
+     *
+     * @param offlineQueueCoalescing
+     *            true to keep only the latest message for each topic. The
+     *            default value is false.
+     */
+    @Override
+    public void setOfflineQueueCoalescing(boolean offlineQueueCoalescing) {
+        super.setOfflineQueueCoalescing(offlineQueueCoalescing);
+    }
+
+    /**
+     * Gets the maximum rate, in messages per second, at which the offline
+     * queues are replayed after the connection is established. Queued
+     * requests are sent in the background, so a large backlog built up during
+     * an outage doesn't go out in a single burst and get the client throttled
+     * by the server. By default, it's 0, which means the replay is not
+     * limited by message rate.
+     *
+     * @return the maximum replay rate in messages per second
+     */
+    @Override
+    public int getOfflineReplayRate() {
+        return super.getOfflineReplayRate();
+    }
+
+    /**
+     * Sets a new value for the maximum rate, in messages per second, at which
+     * the offline queues are replayed. This value must be set before
+     * {@link #connect()} is called.
+     *
+     * @param offlineReplayRate
+     *            the new maximum replay rate, or 0 for no limit. The default
+     *            value is 0.
+     */
+    @Override
+    public void setOfflineReplayRate(int offlineReplayRate) {
+        super.setOfflineReplayRate(offlineReplayRate);
+    }
+
+    /**
+     * Gets the maximum rate, in bytes per second of topic and payload, at
+     * which the offline queues are replayed after the connection is
+     * established. By default, it's 0, which means the replay is not limited
+     * by byte rate.
+     *
+     * @return the maximum replay rate in bytes per second
+     */
+    @Override
+    public int getOfflineReplayByteRate() {
+        return super.getOfflineReplayByteRate();
+    }
+
+    /**
+     * Sets a new value for the maximum rate, in bytes per second, at which
+     * the offline queues are replayed. This value must be set before
+     * {@link #connect()} is called.
+     *
+     * @param offlineReplayByteRate
+     *            the new maximum replay rate, or 0 for no limit. The default
+     *            value is 0.
+     */
+    @Override
+    public void setOfflineReplayByteRate(int offlineReplayByteRate) {
+        super.setOfflineReplayByteRate(offlineReplayByteRate);
+    }
+
+    /**
+     * Gets the in-flight window of the offline queue replay. Queued messages
+     * are held back while the number of in-flight messages has reached the
+     * window, so setting it below {@link #getMaxInflight()} keeps in-flight
+     * slots free for new messages during the replay. By default, it's 0,
+     * which means the replay is only limited by the maximum number of
+     * in-flight messages.
+     *
+     * @return the in-flight window of the offline queue replay
+     */
+    @Override
+    public int getOfflineReplayWindow() {
+        return super.getOfflineReplayWindow();
+    }
+
+    /**
+     * Sets a new value for the in-flight window of the offline queue replay.
+     * This value must be set before {@link #connect()} is called.
+     *
+     * @param offlineReplayWindow
+     *            the new in-flight window, or 0 for no limit. The default
+     *            value is 0.
+     */
+    @Override
+    public void setOfflineReplayWindow(int offlineReplayWindow) {
+        super.setOfflineReplayWindow(offlineReplayWindow);
+    }
+
+    /**
+     * Gets the priority between new messages and queued messages while the
+     * offline publish queue is being replayed. By default, new messages are
+     * published right away, ahead of the queued messages.
+     *
+     * @return the offline replay priority
+     */
+    @Override
+    public AWSIotOfflineReplayPriority getOfflineReplayPriority() {
+        return super.getOfflineReplayPriority();
+    }
+
+    /**
+     * Sets the priority between new messages and queued messages while the
+     * offline publish queue is being replayed. With
+     * {@link AWSIotOfflineReplayPriority#REPLAY_FIRST}, new messages are
+     * appended to the offline publish queue, so they're subject to its size
+     * limit and overflow policy until the replay completes.
+     *
+     * @param offlineReplayPriority
+     *            the new offline replay priority. The default value is
+     *            {@link AWSIotOfflineReplayPriority#LIVE_FIRST}.
+     */
+    @Override
+    public void setOfflineReplayPriority(AWSIotOfflineReplayPriority offlineReplayPriority) {
+        super.setOfflineReplayPriority(offlineReplayPriority);
+    }
+
+    /**
+     * Gets the persistence currently configured for the state of in-flight
+     * messages, i.e. QoS 1 messages that have been sent but not yet
+     * acknowledged. By default, the state is kept in memory and lost when the
+     * process exits. To have unacknowledged messages resent after a restart,
+     * a persistence that stores the state on disk, e.g.
+     * {@link com.amazonaws.services.iot.client.mqtt.AwsIotMqttFilePersistence}, can be configured, together with
+     * {@link #setCleanSession(boolean)} set to false.
+     *
+     * @return the persistence, or null if the state is kept in memory
+     */
+    @Override
+    public MqttClientPersistence getPersistence() {
+        return super.getPersistence();
+    }
+
+    /**
+     * Sets the persistence for the state of in-flight messages. This value
+     * must be set before {@link #connect()} is called for the first time. A
+     * persistence instance must not be shared between clients, including the
+     * clients of an {@link AWSIotMqttClientPool}; each client needs its own.
+     *
+     * @param persistence
+     *            the new persistence, or null to keep the state in memory
+     */
+    @Override
+    public void setPersistence(MqttClientPersistence persistence) {
+        super.setPersistence(persistence);
+    }
+
+    /**
+     * Gets the maximum number of in-flight messages currently configured.
+     * In-flight messages are QoS 1 messages that have been sent but not yet
+     * acknowledged by the server. When the limit is reached, new messages are
+     * rejected, or held until an in-flight message is acknowledged if publish
+     * backpressure is enabled. By default, the limit is 10.
+     *
+     * @return the maximum number of in-flight messages
+     */
+    @Override
+    public int getMaxInflight() {
+        return super.getMaxInflight();
+    }
+
+    /**
+     * Sets a new value for the maximum number of in-flight messages. This
+     * value must be set before {@link #connect()} is called.
+     *
+     * @param maxInflight
+     *            the new maximum number of in-flight messages. The default
+     *            value is 10.
+     */
+    @Override
+    public void setMaxInflight(int maxInflight) {
+        super.setMaxInflight(maxInflight);
+    }
+
+    /**
+     * Gets whether publish backpressure is enabled. When it's disabled,
+     * publishing a message while the maximum number of in-flight messages has
+     * been reached fails with {@link AWSIotException}. When it's enabled, the
+     * message is held and published, in order, as soon as an in-flight message
+     * is acknowledged. Blocking publish calls then wait for the message to be
+     * published, bounded by their timeout, and non-blocking calls return
+     * immediately with the request completing later. By default, it's
+     * disabled.
+     *
+     * @return true if publish backpressure is enabled, false otherwise
+     */
+    @Override
+    public boolean isPublishBackpressure() {
+        return super.isPublishBackpressure();
+    }
+
+    /**
+     * Sets whether publish backpressure is enabled.
+     *
+     * @param publishBackpressure
+     *            true to enable publish backpressure. The default value is
+     *            false.
+     */
+    @Override
+    public void setPublishBackpressure(boolean publishBackpressure) {
+        super.setPublishBackpressure(publishBackpressure);
+    }
+
+    /**
+     * Gets the maximum number of messages waiting for an in-flight slot when
+     * publish backpressure is enabled. Publishing a message while the queue is
+     * full fails with {@link AWSIotException}. Messages still waiting when the
+     * connection is lost are moved to the offline publish queue, or fail if
+     * they can't be queued. By default, it's 1,000.
+     *
+     * @return the maximum number of messages waiting for an in-flight slot
+     */
+    @Override
+    public int getPublishBackpressureQueueSize() {
+        return super.getPublishBackpressureQueueSize();
+    }
+
+    /**
+     * Sets the maximum number of messages waiting for an in-flight slot when
+     * publish backpressure is enabled.
+     *
+     * @param publishBackpressureQueueSize
+     *            the new maximum number of waiting messages. The default value
+     *            is 1,000.
+     */
+    @Override
+    public void setPublishBackpressureQueueSize(int publishBackpressureQueueSize) {
+        super.setPublishBackpressureQueueSize(publishBackpressureQueueSize);
+    }
+
+    /**
+     * Gets the maximum rate, in messages per second, at which messages are
+     * published on the connection. AWS IoT enforces per-connection publish
+     * limits and may disconnect clients exceeding them, so bursts above the
+     * rate are smoothed out by the client instead. Messages exceeding the
+     * rate are held in the publish throttle queue, or fail with
+     * {@link AWSIotException} when it's full. Messages replayed from the
+     * offline queue are paced separately, see
+     * {@link #getOfflineReplayRate()}. By default, it's 0, which means the
+     * publish rate is not limited.
+     *
+     * @return the maximum publish rate in messages per second
+     */
+    @Override
+    public int getPublishRate() {
+        return super.getPublishRate();
+    }
+
+    /**
+     * Sets a new value for the maximum rate, in messages per second, at which
+     * messages are published. This value must be set before
+     * {@link #connect()} is called.
+     *
+     * @param publishRate
+     *            the new maximum publish rate, or 0 for no limit. The default
+     *            value is 0.
+     */
+    @Override
+    public void setPublishRate(int publishRate) {
+        super.setPublishRate(publishRate);
+    }
+
+    /**
+     * Gets the maximum rate, in bytes per second of topic and payload, at
+     * which messages are published on the connection. By default, it's 0,
+     * which means the publish byte rate is not limited.
+     *
+     * @return the maximum publish rate in bytes per second
+     */
+    @Override
+    public int getPublishByteRate() {
+        return super.getPublishByteRate();
+    }
+
+    /**
+     * Sets a new value for the maximum rate, in bytes per second, at which
+     * messages are published. This value must be set before
+     * {@link #connect()} is called.
+     *
+     * @param publishByteRate
+     *            the new maximum publish rate, or 0 for no limit. The default
+     *            value is 0.
+     */
+    @Override
+    public void setPublishByteRate(int publishByteRate) {
+        super.setPublishByteRate(publishByteRate);
+    }
+
+    /**
+     * Gets the size of the publish throttle queue, which holds messages
+     * exceeding the publish rate until the rate allows them to be published,
+     * in order. Blocking publish calls wait for their message to be
+     * published, bounded by their timeout. By default, it's 0, which means
+     * messages exceeding the rate fail right away.
+     *
+     * @return the size of the publish throttle queue
+     */
+    @Override
+    public int getPublishThrottleQueueSize() {
+        return super.getPublishThrottleQueueSize();
+    }
+
+    /**
+     * Sets a new value for the size of the publish throttle queue.
+     *
+     * @param publishThrottleQueueSize
+     *            the new size of the publish throttle queue. The default
+     *            value is 0.
+     */
+    @Override
+    public void setPublishThrottleQueueSize(int publishThrottleQueueSize) {
+        super.setPublishThrottleQueueSize(publishThrottleQueueSize);
+    }
+
+    /**
+     * Gets the tick duration in milliseconds of the timing wheel currently
+     * configured. Timeouts of asynchronous requests are kept in a timing wheel
+     * that is checked once per tick, so the tick duration is also the
+     * precision of these timeouts. By default, it's 100ms.
+     *
+     * @return the tick duration of the timing wheel
+     */
+    @Override
+    public int getTimeoutTickDuration() {
+        return super.getTimeoutTickDuration();
+    }
+
+    /**
+     * Sets a new value in milliseconds for the tick duration of the timing
+     * wheel. This value must be set before {@link #connect()} is called.
+     *
+     * @param timeoutTickDuration
+     *            the new tick duration. The default value is 100ms.
+     */
+    @Override
+    public void setTimeoutTickDuration(int timeoutTickDuration) {
+        super.setTimeoutTickDuration(timeoutTickDuration);
+    }
+
+    /**
+     * Gets the number of buckets in the timing wheel currently configured.
+     * Timeouts longer than the wheel size multiplied by the tick duration
+     * stay in the wheel for more than one revolution. By default, the wheel
+     * has 512 buckets.
+     *
+     * @return the number of buckets in the timing wheel
+     */
+    @Override
+    public int getTimeoutWheelSize() {
+        return super.getTimeoutWheelSize();
+    }
+
+    /**
+     * Sets a new value for the number of buckets in the timing wheel, which
+     * is rounded up to a power of two. This value must be set before
+     * {@link #connect()} is called.
+     *
+     * @param timeoutWheelSize
+     *            the new number of buckets. The default value is 512.
+     */
+    @Override
+    public void setTimeoutWheelSize(int timeoutWheelSize) {
+        super.setTimeoutWheelSize(timeoutWheelSize);
+    }
+
+    /**
+     * Gets whether user callbacks are run on virtual threads. When enabled,
+     * message callbacks, i.e. {@link AWSIotTopic#onMessage(AWSIotMessage)}
+     * and the success and failure callbacks of requests, are each run on their
+     * own virtual thread instead of the client thread pool, so a slow callback
+     * doesn't hold up the others. This requires JDK 21 or later; on earlier
+     * versions, callbacks keep running on the client thread pool. By default,
+     * it's disabled.
+     * <p>
+     * Blocking calls, such as {@link #publish(String, String, long)}, made from
+     * a virtual thread park the virtual thread rather than a platform thread.
+     * Note that callbacks running on virtual threads may be run concurrently
+     * and in any order, unless {@link #isOrderedCallbacks()} is enabled.
+     * </p>
+     *
+     * @return true if callbacks are run on virtual threads
+     */
+    @Override
+    public boolean isVirtualThreadCallbacks() {
+        return super.isVirtualThreadCallbacks();
+    }
+
+    /**
+     * Enables or disables running user callbacks on virtual threads. This
+     * value must be set before {@link #connect()} is called.
+     *
+     * @param virtualThreadCallbacks
+     *            true to run callbacks on virtual threads. The default value
+     *            is false.
+     */
+    @Override
+    public void setVirtualThreadCallbacks(boolean virtualThreadCallbacks) {
+        super.setVirtualThreadCallbacks(virtualThreadCallbacks);
+    }
+
+    /**
+     * Gets the maximum number of message callbacks, i.e.
+     * {@link AWSIotTopic#onMessage(AWSIotMessage)}, running at the same time
+     * on virtual threads. Callbacks beyond this limit wait for a running one
+     * to return. Request callbacks aren't limited, so message callbacks can
+     * make synchronous requests. By default, up to 64 message callbacks run
+     * at the same time.
+     *
+     * @return the maximum number of concurrent callbacks
+     */
+    @Override
+    public int getMaxConcurrentCallbacks() {
+        return super.getMaxConcurrentCallbacks();
+    }
+
+    /**
+     * Sets a new value for the maximum number of message callbacks running at
+     * the same time on virtual threads. This value must be set before
+     * {@link #connect()} is called.
+     *
+     * @param maxConcurrentCallbacks
+     *            the new maximum number of concurrent callbacks. The default
+     *            value is 64.
+     */
+    @Override
+    public void setMaxConcurrentCallbacks(int maxConcurrentCallbacks) {
+        super.setMaxConcurrentCallbacks(maxConcurrentCallbacks);
+    }
+
+    /**
+     * Gets whether the message callbacks of a subscription are run in order.
+     * When enabled, the messages of a subscription, or of a shadow device
+     * across all its topics, are passed to
+     * {@link AWSIotTopic#onMessage(AWSIotMessage)} one at a time, in the
+     * order they arrived, while the messages of different subscriptions are
+     * still processed in parallel. This lets the client use more than one
+     * thread, see {@link #setNumOfClientThreads(int)}, without reordering
+     * e.g. shadow deltas or telemetry. By default, it's disabled, in which
+     * case messages may be processed in any order when the client has more
+     * than one thread.
+     *
+     * @return true if message callbacks are run in order
+     */
+    @Override
+    public boolean isOrderedCallbacks() {
+        return super.isOrderedCallbacks();
+    }
+
+    /**
+     * Enables or disables running the message callbacks of a subscription in
+     * order.
+     *
+     * @param orderedCallbacks
+     *            true to run message callbacks in order. The default value is
+     *            false.
+     */
+    @Override
+    public void setOrderedCallbacks(boolean orderedCallbacks) {
+        super.setOrderedCallbacks(orderedCallbacks);
+    }
+
+    /**
+     * Gets whether callbacks are called directly on the thread receiving the
+     * messages and acknowledgements from the server. When enabled,
+     * {@link AWSIotTopic#onMessage(AWSIotMessage)} as well as the success and
+     * failure callbacks of requests skip the hand-off to the client thread
+     * pool, which lowers their latency. This only suits cheap, non-blocking
+     * callbacks: a callback that blocks holds up all the incoming messages and
+     * acknowledgements of the connection, and synchronous requests made from
+     * a callback can never complete. To enable it for individual
+     * subscriptions only, see {@link AWSIotTopic#setInlineCallback(boolean)}.
+     * By default, it's disabled.
+     *
+     * @return true if callbacks are called on the receiving thread
+     */
+    @Override
+    public boolean isInlineCallbacks() {
+        return super.isInlineCallbacks();
+    }
+
+    /**
+     * Enables or disables calling callbacks directly on the thread receiving
+     * the messages and acknowledgements from the server.
+     *
+     * @param inlineCallbacks
+     *            true to call callbacks on the receiving thread. The default
+     *            value is false.
+     */
+    @Override
+    public void setInlineCallbacks(boolean inlineCallbacks) {
+        super.setInlineCallbacks(inlineCallbacks);
+    }
+
     /**
      * Gets the Last Will and Testament message currently configured. The Last
      * Will and Testament message with configured payload will be published when
@@ -548,6 +1196,73 @@ public class AWSIotMqttClient extends AbstractAwsIotClient {
         super.setWillMessage(willMessage);
     }
 
+    /**
+     * Gets the number of inbound messages that were routed to at least one
+     * subscription without wildcards. Such subscriptions, e.g. the shadow
+     * topics used by {@link AWSIotDevice}, are found with a single hash lookup.
+     *
+     * @return the number of messages dispatched through the exact-match path
+     */
+    @Override
+    public long getExactDispatchCount() {
+        return super.getExactDispatchCount();
+    }
+
+    /**
+     * Gets the number of inbound messages that were routed to at least one
+     * subscription with wildcards ({@code +} or {@code #}).
+     *
+     * @return the number of messages dispatched through the wildcard path
+     */
+    @Override
+    public long getWildcardDispatchCount() {
+        return super.getWildcardDispatchCount();
+    }
+
+    /**
+     * Gets the number of inbound messages that didn't match any subscription.
+     *
+     * @return the number of unmatched messages
+     */
+    @Override
+    public long getUnmatchedDispatchCount() {
+        return super.getUnmatchedDispatchCount();
+    }
+
+    /**
+     * Gets the number of messages that have been held in the publish
+     * throttle queue because they exceeded the publish rate.
+     *
+     * @return the number of throttled messages
+     */
+    @Override
+    public long getThrottledPublishCount() {
+        return super.getThrottledPublishCount();
+    }
+
+    /**
+     * Gets the total time messages have spent in the publish throttle queue.
+     * Together with {@link #getThrottledPublishCount()}, it shows how much
+     * the publish rate is slowing the application down.
+     *
+     * @return the throttled time in milliseconds
+     */
+    @Override
+    public long getThrottledPublishTime() {
+        return super.getThrottledPublishTime();
+    }
+
+    /**
+     * Gets the number of messages that failed because they exceeded the
+     * publish rate while the publish throttle queue was full.
+     *
+     * @return the number of rejected messages
+     */
+    @Override
+    public long getRejectedPublishCount() {
+        return super.getRejectedPublishCount();
+    }
+
     /**
      * Connect the client to the server. This is a blocking call, so the calling
      * thread will be blocked until the operation succeeded or failed.
@@ -604,6 +1319,24 @@ public class AWSIotMqttClient extends AbstractAwsIotClient {
         super.connect(timeout, blocking);
     }
 
+    /**
+     * Connect the client to the server. This is a non-blocking call, so it
+     * immediately returns a future object once the connection request has been
+     * sent. The future is completed when the connection is established, or
+     * exceptionally with {@link AWSIotException} or
+     * {@link AWSIotTimeoutException} if the operation failed or timed out
+     * respectively.
+     *
+     * @param timeout
+     *            the timeout in milliseconds for the operation to be considered
+     *            timed out
+     * @return the future object of the operation
+     */
+    @Override
+    public CompletableFuture<Void> connectAsync(long timeout) {
+        return super.connectAsync(timeout);
+    }
+
     /**
      * Disconnect the client from the server. This is a blocking call, so the
      * calling thread will be blocked until the operation succeeded or failed.
@@ -754,6 +1487,29 @@ public class AWSIotMqttClient extends AbstractAwsIotClient {
         super.publish(topic, qos, payload, timeout);
     }
 
+    /**
+     * Publishes the payload to a given topic. This is a non-blocking call, so
+     * it immediately returns a future object once the operation has been queued
+     * in the system. The future is completed when the publish operation
+     * succeeded, or exceptionally with {@link AWSIotException} or
+     * {@link AWSIotTimeoutException} if it failed or timed out respectively.
+     *
+     * @param topic
+     *            the topic to be published to
+     * @param qos
+     *            the MQTT QoS used for publishing
+     * @param payload
+     *            the payload to be published
+     * @param timeout
+     *            the timeout in milliseconds for the operation to be considered
+     *            timed out
+     * @return the future object of the operation
+     */
+    @Override
+    public CompletableFuture<Void> publishAsync(String topic, AWSIotQos qos, String payload, long timeout) {
+        return super.publishAsync(topic, qos, payload, timeout);
+    }
+
     /**
      * Publishes the raw payload to a given topic. This is a blocking call so
      * the calling thread is blocked until the publish operation succeeded or
@@ -848,6 +1604,29 @@ public class AWSIotMqttClient extends AbstractAwsIotClient {
         super.publish(topic, qos, payload, timeout);
     }
 
+    /**
+     * Publishes the raw payload to a given topic. This is a non-blocking call,
+     * so it immediately returns a future object once the operation has been
+     * queued in the system. The future is completed when the publish operation
+     * succeeded, or exceptionally with {@link AWSIotException} or
+     * {@link AWSIotTimeoutException} if it failed or timed out respectively.
+     *
+     * @param topic
+     *            the topic to be published to
+     * @param qos
+     *            the MQTT QoS used for publishing
+     * @param payload
+     *            the payload to be published
+     * @param timeout
+     *            the timeout in milliseconds for the operation to be considered
+     *            timed out
+     * @return the future object of the operation
+     */
+    @Override
+    public CompletableFuture<Void> publishAsync(String topic, AWSIotQos qos, byte[] payload, long timeout) {
+        return super.publishAsync(topic, qos, payload, timeout);
+    }
+
     /**
      * Publishes the payload to a given topic. Topic, MQTT QoS, and payload are
      * given in the {@code message} argument. This is a non-blocking call so it
@@ -896,6 +1675,74 @@ public class AWSIotMqttClient extends AbstractAwsIotClient {
         super.publish(message, timeout);
     }
 
+    /**
+     * Publishes the payload to a given topic. Topic, MQTT QoS, and payload are
+     * given in the {@code message} argument. This is a non-blocking call, so it
+     * immediately returns a future object once the operation has been queued
+     * in the system. The future is completed when the publish operation
+     * succeeded, or exceptionally with {@link AWSIotException} or
+     * {@link AWSIotTimeoutException} if it failed or timed out respectively.
+     * The callback functions of {@code message} are invoked as well.
+     *
+     * @param message
+     *            the message, including the topic, MQTT QoS, and payload, to be
+     *            published
+     * @param timeout
+     *            the timeout in milliseconds for the operation to be considered
+     *            timed out
+     * @return the future object of the operation
+     */
+    @Override
+    public CompletableFuture<Void> publishAsync(AWSIotMessage message, long timeout) {
+        return super.publishAsync(message, timeout);
+    }
+
+    /**
+     * Publishes a batch of messages. Topic, MQTT QoS, and payload are given in
+     * each of the messages. All the messages are handed to the connection in
+     * one call without waiting for the acknowledgement of each message, so
+     * the in-flight window can be kept full. This is a non-blocking call,
+     * which returns a future object that is completed once all the messages
+     * have been published, or exceptionally if any of them failed. The
+     * callback functions of each message are invoked as their own publish
+     * operation completes.
+     *
+     * @param messages
+     *            the messages, including the topic, MQTT QoS, and payload, to
+     *            be published
+     * @return the future object of the batch
+     */
+    @Override
+    public CompletableFuture<Void> publishBatch(Collection<? extends AWSIotMessage> messages) {
+        return super.publishBatch(messages);
+    }
+
+    /**
+     * Publishes a batch of messages with a timeout. Topic, MQTT QoS, and
+     * payload are given in each of the messages. All the messages are handed
+     * to the connection in one call without waiting for the acknowledgement
+     * of each message, so the in-flight window can be kept full. The timeout
+     * applies to the batch as a whole; messages that haven't been
+     * acknowledged when it expires are timed out. This is a non-blocking call,
+     * which returns a future object that is completed once all the messages
+     * have been published, or exceptionally with {@link AWSIotException} or
+     * {@link AWSIotTimeoutException} if any of them failed or timed out. The
+     * callback functions of each message are invoked as their own publish
+     * operation completes.
+     *
+     * @param messages
+     *            the messages, including the topic, MQTT QoS, and payload, to
+     *            be published
+     * @param timeout
+     *            the timeout in milliseconds for the batch to be considered
+     *            timed out
+     * @return the future object of the batch
+     */
+    @Override
+    public CompletableFuture<Void> publishBatch(Collection<? extends AWSIotMessage> messages, long timeout) {
+        return super.publishBatch(messages, timeout);
+    }
+
     /**
      * Subscribes to a given topic. Topic and MQTT QoS are given in the
      * {@code topic} argument. This call can be either blocking or non-blocking
@@ -1017,6 +1864,30 @@ public class AWSIotMqttClient extends AbstractAwsIotClient {
         super.subscribe(topic, timeout);
     }
 
+    /**
+     * Subscribes to a given topic. Topic and MQTT QoS are given in the
+     * {@code topic} argument. This is a non-blocking call, so it immediately
+     * returns a future object once the operation has been queued in the
+     * system. The future is completed when the subscription is acknowledged by
+     * the server, or exceptionally with {@link AWSIotException} or
+     * {@link AWSIotTimeoutException} if it failed or timed out respectively.
+     * Like the blocking APIs, {@link AWSIotTopic#onSuccess},
+     * {@link AWSIotTopic#onFailure}, and {@link AWSIotTopic#onTimeout} are not
+     * invoked; {@link AWSIotTopic#onMessage} is invoked when subscribed message
+     * arrives.
+     *
+     * @param topic
+     *            the topic to subscribe to
+     * @param timeout
+     *            the timeout in milliseconds for the operation to be considered
+     *            timed out
+     * @return the future object of the operation
+     */
+    @Override
+    public CompletableFuture<Void> subscribeAsync(AWSIotTopic topic, long timeout) {
+        return super.subscribeAsync(topic, timeout);
+    }
+
     /**
      * Unsubscribes to a given topic. This is a blocking call, so the calling
      * thread is blocked until the unsubscribe operation completed or failed.
@@ -1056,6 +1927,25 @@ public class AWSIotMqttClient extends AbstractAwsIotClient {
         super.unsubscribe(topic, timeout);
     }
 
+    /**
+     * Unsubscribes to a given topic. This is a non-blocking call, so it
+     * immediately returns a future object once the operation has been queued
+     * in the system. The future is completed when the operation succeeded, or
+     * exceptionally with {@link AWSIotException} or
+     * {@link AWSIotTimeoutException} if it failed or timed out respectively.
+     *
+     * @param topic
+     *            the topic to unsubscribe to
+     * @param timeout
+     *            the timeout in milliseconds for the operation to be considered
+     *            timed out
+     * @return the future object of the operation
+     */
+    @Override
+    public CompletableFuture<Void> unsubscribeAsync(String topic, long timeout) {
+        return super.unsubscribeAsync(topic, timeout);
+    }
+
     /**
      * Unsubscribes to a given topic. This is a non-blocking call so it
      * immediately returns once the operation has been queued in the system. The
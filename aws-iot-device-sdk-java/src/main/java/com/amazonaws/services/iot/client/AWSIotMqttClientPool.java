@@ -0,0 +1,603 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client;
+
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLSocketFactory;
+
+import com.amazonaws.services.iot.client.core.AwsIotConsistentHash;
+
+/**
+ * This class provides a pool of MQTT clients, each with its own connection,
+ * behind a single client-like interface. The throughput of a single client is
+ * capped by its one connection, both by the socket and by the per-connection
+ * limits enforced by AWS IoT; a pool lets a process, e.g. a gateway, scale
+ * past them.
+ * <p>
+ * The clients of the pool are created with client IDs derived from the given
+ * one, i.e. {@code <clientId>-0} to {@code <clientId>-<poolSize - 1>}.
+ * Publish requests are routed to a client by consistent hashing on the topic,
+ * so messages on the same topic always use the same connection and keep
+ * their order. Subscriptions are spread across the clients the same way, by
+ * topic filter, and devices by thing name. {@link #getClient(String)} gives
+ * access to the client for any other key.
+ * </p>
+ * <p>
+ * Each subscription is made on exactly one connection, so a message is
+ * delivered once to each matching subscription, whichever connection it
+ * arrives on. The clients can be configured, e.g. with
+ * {@link AWSIotMqttClient#setMaxInflight(int)}, through {@link #getClients()}
+ * before {@link #connect()} is called.
+ * </p>
+ */
+public class AWSIotMqttClientPool {
+
+    private static final Logger LOGGER = Logger.getLogger(AWSIotMqttClientPool.class.getName());
+
+    private static final int VIRTUAL_NODES = 160;
+
+    private final List<AWSIotMqttClient> clients;
+    private final AwsIotConsistentHash<AWSIotMqttClient> ring;
+
+    /**
+     * Instantiates a new pool of clients using TLS 1.2 mutual authentication.
+     * See also
+     * {@link AWSIotMqttClient#AWSIotMqttClient(String, String, KeyStore, String)}.
+     *
+     * @param clientEndpoint
+     *            the client endpoint
+     * @param clientId
+     *            the client ID the client IDs of the pool are derived from
+     * @param keyStore
+     *            the key store containing the client X.509 certificate and
+     *            private key
+     * @param keyPassword
+     *            the key password protecting the private key in the
+     *            {@code keyStore} argument
+     * @param poolSize
+     *            the number of clients in the pool
+     */
+    public AWSIotMqttClientPool(String clientEndpoint, String clientId, KeyStore keyStore, String keyPassword,
+            int poolSize) {
+        this(createClients(poolSize, clientEndpoint, clientId, keyStore, keyPassword, null, null, null, null));
+    }
+
+    /**
+     * Instantiates a new pool of clients using TLS 1.2 mutual authentication.
+     * See also
+     * {@link AWSIotMqttClient#AWSIotMqttClient(String, String, SSLSocketFactory)}.
+     *
+     * @param clientEndpoint
+     *            the client endpoint
+     * @param clientId
+     *            the client ID the client IDs of the pool are derived from
+     * @param socketFactory
+     *            the socket factory initialized with the client X.509
+     *            certificate and private key
+     * @param poolSize
+     *            the number of clients in the pool
+     */
+    public AWSIotMqttClientPool(String clientEndpoint, String clientId, SSLSocketFactory socketFactory,
+            int poolSize) {
+        this(createClients(poolSize, clientEndpoint, clientId, null, null, socketFactory, null, null, null));
+    }
+
+    /**
+     * Instantiates a new pool of clients using Secure WebSocket and AWS SigV4
+     * authentication. See also
+     * {@link AWSIotMqttClient#AWSIotMqttClient(String, String, String, String, String)}.
+     *
+     * @param clientEndpoint
+     *            the client endpoint
+     * @param clientId
+     *            the client ID the client IDs of the pool are derived from
+     * @param awsAccessKeyId
+     *            the AWS access key id
+     * @param awsSecretAccessKey
+     *            the AWS secret access key
+     * @param sessionToken
+     *            the session token of temporary credentials, or null
+     * @param poolSize
+     *            the number of clients in the pool
+     */
+    public AWSIotMqttClientPool(String clientEndpoint, String clientId, String awsAccessKeyId,
+            String awsSecretAccessKey, String sessionToken, int poolSize) {
+        this(createClients(poolSize, clientEndpoint, clientId, null, null, null, awsAccessKeyId, awsSecretAccessKey,
+                sessionToken));
+    }
+
+    /**
+     * Instantiates a new pool of the given clients, e.g. to use constructor
+     * arguments not covered by the other constructors. The clients must have
+     * distinct client IDs.
+     *
+     * @param clients
+     *            the clients of the pool
+     */
+    public AWSIotMqttClientPool(List<AWSIotMqttClient> clients) {
+        this.clients = Collections.unmodifiableList(new ArrayList<>(clients));
+        this.ring = new AwsIotConsistentHash<>(this.clients, VIRTUAL_NODES);
+    }
+
+    /**
+     * Gets the clients of the pool.
+     *
+     * @return the unmodifiable list of clients
+     */
+    public List<AWSIotMqttClient> getClients() {
+        return clients;
+    }
+
+    /**
+     * Gets the client a key maps to. The same key always maps to the same
+     * client.
+     *
+     * @param key
+     *            the key, e.g. a topic or a device ID
+     * @return the client
+     */
+    public AWSIotMqttClient getClient(String key) {
+        return ring.get(key);
+    }
+
+    /**
+     * Connects all the clients of the pool. This is a blocking call.
+     *
+     * @throws AWSIotException
+     *             exception thrown if any of the clients failed to connect
+     */
+    public void connect() throws AWSIotException {
+        try {
+            connect(0);
+        } catch (AWSIotTimeoutException e) {
+            // We shouldn't get timeout exception because timeout is 0
+            throw new AWSIotException(e);
+        }
+    }
+
+    /**
+     * Connects all the clients of the pool, in parallel. This is a blocking
+     * call.
+     *
+     * @param timeout
+     *            the timeout in milliseconds for each client to connect, or 0
+     *            for no timeout
+     * @throws AWSIotException
+     *             exception thrown if any of the clients failed to connect
+     * @throws AWSIotTimeoutException
+     *             exception thrown if any of the clients timed out
+     */
+    public void connect(long timeout) throws AWSIotException, AWSIotTimeoutException {
+        await(connectAsync(timeout));
+    }
+
+    /**
+     * Connects all the clients of the pool, in parallel. This is a
+     * non-blocking call.
+     *
+     * @param timeout
+     *            the timeout in milliseconds for each client to connect, or 0
+     *            for no timeout
+     * @return the future completed when all the clients are connected
+     */
+    public CompletableFuture<Void> connectAsync(long timeout) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(clients.size());
+        for (AWSIotMqttClient client : clients) {
+            futures.add(client.connectAsync(timeout));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+    }
+
+    /**
+     * Disconnects all the clients of the pool. This is a blocking call.
+     *
+     * @throws AWSIotException
+     *             exception thrown if any of the clients failed to disconnect
+     */
+    public void disconnect() throws AWSIotException {
+        try {
+            disconnect(0);
+        } catch (AWSIotTimeoutException e) {
+            // We shouldn't get timeout exception because timeout is 0
+            throw new AWSIotException(e);
+        }
+    }
+
+    /**
+     * Disconnects all the clients of the pool. All the clients are
+     * disconnected even if some of them fail. This is a blocking call.
+     *
+     * @param timeout
+     *            the timeout in milliseconds for each client to disconnect, or
+     *            0 for no timeout
+     * @throws AWSIotException
+     *             exception thrown if any of the clients failed to disconnect
+     * @throws AWSIotTimeoutException
+     *             exception thrown if any of the clients timed out
+     */
+    public void disconnect(long timeout) throws AWSIotException, AWSIotTimeoutException {
+        AWSIotException exception = null;
+        AWSIotTimeoutException timeoutException = null;
+
+        for (AWSIotMqttClient client : clients) {
+            try {
+                client.disconnect(timeout, true);
+            } catch (AWSIotException e) {
+                exception = (exception != null) ? exception : e;
+            } catch (AWSIotTimeoutException e) {
+                timeoutException = (timeoutException != null) ? timeoutException : e;
+            }
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+        if (timeoutException != null) {
+            throw timeoutException;
+        }
+    }
+
+    /**
+     * Gets the connection status of the pool.
+     *
+     * @return {@link AWSIotConnectionStatus#CONNECTED} if all the clients are
+     *         connected, {@link AWSIotConnectionStatus#DISCONNECTED} if none of
+     *         them is, and {@link AWSIotConnectionStatus#RECONNECTING}
+     *         otherwise
+     */
+    public AWSIotConnectionStatus getConnectionStatus() {
+        int connected = 0;
+        int disconnected = 0;
+        for (AWSIotMqttClient client : clients) {
+            AWSIotConnectionStatus status = client.getConnectionStatus();
+            if (status == AWSIotConnectionStatus.CONNECTED) {
+                connected++;
+            } else if (status == AWSIotConnectionStatus.DISCONNECTED) {
+                disconnected++;
+            }
+        }
+
+        if (connected == clients.size()) {
+            return AWSIotConnectionStatus.CONNECTED;
+        } else if (disconnected == clients.size()) {
+            return AWSIotConnectionStatus.DISCONNECTED;
+        } else {
+            return AWSIotConnectionStatus.RECONNECTING;
+        }
+    }
+
+    /**
+     * Publishes the payload to a given topic with QoS 0, on the client the
+     * topic maps to. See also {@link AWSIotMqttClient#publish(String, String)}.
+     *
+     * @param topic
+     *            the topic to be published to
+     * @param payload
+     *            the payload to be published
+     * @throws AWSIotException
+     *             exception thrown if there are any errors in processing the
+     *             request
+     */
+    public void publish(String topic, String payload) throws AWSIotException {
+        getClient(topic).publish(topic, payload);
+    }
+
+    /**
+     * Publishes the payload to a given topic, on the client the topic maps
+     * to. See also
+     * {@link AWSIotMqttClient#publish(String, AWSIotQos, String, long)}.
+     *
+     * @param topic
+     *            the topic to be published to
+     * @param qos
+     *            the MQTT QoS level
+     * @param payload
+     *            the payload to be published
+     * @param timeout
+     *            the timeout in milliseconds that the calling thread will wait
+     * @throws AWSIotException
+     *             exception thrown if there are any errors in processing the
+     *             request
+     * @throws AWSIotTimeoutException
+     *             exception thrown if the request is timed out
+     */
+    public void publish(String topic, AWSIotQos qos, String payload, long timeout)
+            throws AWSIotException, AWSIotTimeoutException {
+        getClient(topic).publish(topic, qos, payload, timeout);
+    }
+
+    /**
+     * Publishes the payload to a given topic, on the client the topic maps
+     * to. See also
+     * {@link AWSIotMqttClient#publish(String, AWSIotQos, byte[], long)}.
+     *
+     * @param topic
+     *            the topic to be published to
+     * @param qos
+     *            the MQTT QoS level
+     * @param payload
+     *            the payload to be published
+     * @param timeout
+     *            the timeout in milliseconds that the calling thread will wait
+     * @throws AWSIotException
+     *             exception thrown if there are any errors in processing the
+     *             request
+     * @throws AWSIotTimeoutException
+     *             exception thrown if the request is timed out
+     */
+    public void publish(String topic, AWSIotQos qos, byte[] payload, long timeout)
+            throws AWSIotException, AWSIotTimeoutException {
+        getClient(topic).publish(topic, qos, payload, timeout);
+    }
+
+    /**
+     * Publishes the message, on the client its topic maps to. This is a
+     * non-blocking call. See also
+     * {@link AWSIotMqttClient#publish(AWSIotMessage)}.
+     *
+     * @param message
+     *            the message to be published
+     * @throws AWSIotException
+     *             exception thrown if there are any errors in processing the
+     *             request
+     */
+    public void publish(AWSIotMessage message) throws AWSIotException {
+        getClient(message.getTopic()).publish(message);
+    }
+
+    /**
+     * Publishes the message, on the client its topic maps to. This is a
+     * non-blocking call. See also
+     * {@link AWSIotMqttClient#publish(AWSIotMessage, long)}.
+     *
+     * @param message
+     *            the message to be published
+     * @param timeout
+     *            the timeout in milliseconds for the request
+     * @throws AWSIotException
+     *             exception thrown if there are any errors in processing the
+     *             request
+     */
+    public void publish(AWSIotMessage message, long timeout) throws AWSIotException {
+        getClient(message.getTopic()).publish(message, timeout);
+    }
+
+    /**
+     * Publishes the message, on the client its topic maps to. See also
+     * {@link AWSIotMqttClient#publishAsync(AWSIotMessage, long)}.
+     *
+     * @param message
+     *            the message to be published
+     * @param timeout
+     *            the timeout in milliseconds for the request
+     * @return the future completed when the message has been published
+     */
+    public CompletableFuture<Void> publishAsync(AWSIotMessage message, long timeout) {
+        return getClient(message.getTopic()).publishAsync(message, timeout);
+    }
+
+    /**
+     * Publishes a batch of messages, each on the client its topic maps to.
+     * The messages are grouped by client, and each group is published as a
+     * batch. See also
+     * {@link AWSIotMqttClient#publishBatch(Collection, long)}.
+     *
+     * @param messages
+     *            the messages to be published
+     * @param timeout
+     *            the timeout in milliseconds for the whole batch
+     * @return the future completed when all the messages have been published
+     */
+    public CompletableFuture<Void> publishBatch(Collection<? extends AWSIotMessage> messages, long timeout) {
+        Map<AWSIotMqttClient, List<AWSIotMessage>> batches = new LinkedHashMap<>();
+        for (AWSIotMessage message : messages) {
+            AWSIotMqttClient client = getClient(message.getTopic());
+            List<AWSIotMessage> batch = batches.get(client);
+            if (batch == null) {
+                batch = new ArrayList<>();
+                batches.put(client, batch);
+            }
+            batch.add(message);
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(batches.size());
+        for (Map.Entry<AWSIotMqttClient, List<AWSIotMessage>> entry : batches.entrySet()) {
+            futures.add(entry.getKey().publishBatch(entry.getValue(), timeout));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+    }
+
+    /**
+     * Subscribes to a topic, on the client the topic filter maps to. This is
+     * a non-blocking call. See also
+     * {@link AWSIotMqttClient#subscribe(AWSIotTopic)}.
+     *
+     * @param topic
+     *            the topic to subscribe to
+     * @throws AWSIotException
+     *             exception thrown if there are any errors in processing the
+     *             request
+     */
+    public void subscribe(AWSIotTopic topic) throws AWSIotException {
+        getClient(topic.getTopic()).subscribe(topic);
+    }
+
+    /**
+     * Subscribes to a topic, on the client the topic filter maps to. See also
+     * {@link AWSIotMqttClient#subscribe(AWSIotTopic, long, boolean)}.
+     *
+     * @param topic
+     *            the topic to subscribe to
+     * @param timeout
+     *            the timeout in milliseconds for the request
+     * @param blocking
+     *            whether the call should block until the subscription is
+     *            acknowledged
+     * @throws AWSIotException
+     *             exception thrown if there are any errors in processing the
+     *             request
+     * @throws AWSIotTimeoutException
+     *             exception thrown if the request is timed out
+     */
+    public void subscribe(AWSIotTopic topic, long timeout, boolean blocking)
+            throws AWSIotException, AWSIotTimeoutException {
+        getClient(topic.getTopic()).subscribe(topic, timeout, blocking);
+    }
+
+    /**
+     * Subscribes to a topic, on the client the topic filter maps to. See also
+     * {@link AWSIotMqttClient#subscribeAsync(AWSIotTopic, long)}.
+     *
+     * @param topic
+     *            the topic to subscribe to
+     * @param timeout
+     *            the timeout in milliseconds for the request
+     * @return the future completed when the subscription is acknowledged
+     */
+    public CompletableFuture<Void> subscribeAsync(AWSIotTopic topic, long timeout) {
+        return getClient(topic.getTopic()).subscribeAsync(topic, timeout);
+    }
+
+    /**
+     * Unsubscribes from a topic, on the client the topic filter maps to. This
+     * is a blocking call. See also
+     * {@link AWSIotMqttClient#unsubscribe(String, long)}.
+     *
+     * @param topic
+     *            the topic to unsubscribe from
+     * @param timeout
+     *            the timeout in milliseconds that the calling thread will wait
+     * @throws AWSIotException
+     *             exception thrown if there are any errors in processing the
+     *             request
+     * @throws AWSIotTimeoutException
+     *             exception thrown if the request is timed out
+     */
+    public void unsubscribe(String topic, long timeout) throws AWSIotException, AWSIotTimeoutException {
+        getClient(topic).unsubscribe(topic, timeout);
+    }
+
+    /**
+     * Unsubscribes from a topic, on the client the topic filter maps to. See
+     * also {@link AWSIotMqttClient#unsubscribeAsync(String, long)}.
+     *
+     * @param topic
+     *            the topic to unsubscribe from
+     * @param timeout
+     *            the timeout in milliseconds for the request
+     * @return the future completed when the unsubscription is acknowledged
+     */
+    public CompletableFuture<Void> unsubscribeAsync(String topic, long timeout) {
+        return getClient(topic).unsubscribeAsync(topic, timeout);
+    }
+
+    /**
+     * Attaches a device, on the client its thing name maps to. See also
+     * {@link AWSIotMqttClient#attach(AWSIotDevice)}.
+     *
+     * @param device
+     *            the device to be attached
+     * @throws AWSIotException
+     *             exception thrown if there are any errors in processing the
+     *             request
+     */
+    public void attach(AWSIotDevice device) throws AWSIotException {
+        getClient(device.getThingName()).attach(device);
+    }
+
+    /**
+     * Detaches a device from the pool. See also
+     * {@link AWSIotMqttClient#detach(AWSIotDevice)}.
+     *
+     * @param device
+     *            the device to be detached
+     * @throws AWSIotException
+     *             exception thrown if there are any errors in processing the
+     *             request
+     */
+    public void detach(AWSIotDevice device) throws AWSIotException {
+        getClient(device.getThingName()).detach(device);
+    }
+
+    /**
+     * Dispatches a message to the matching subscriptions of all the clients
+     * of the pool, e.g. to deliver a message locally. Messages received on
+     * the connections of the pool are dispatched by the client they arrive
+     * on, which holds the subscriptions they match.
+     *
+     * @param message
+     *            the message to be dispatched
+     */
+    public void dispatch(AWSIotMessage message) {
+        boolean delivered = false;
+        for (AWSIotMqttClient client : clients) {
+            delivered |= client.deliver(message);
+        }
+
+        if (!delivered) {
+            LOGGER.warning("Unexpected message received from topic " + message.getTopic());
+        }
+    }
+
+    private static List<AWSIotMqttClient> createClients(int poolSize, String clientEndpoint, String clientId,
+            KeyStore keyStore, String keyPassword, SSLSocketFactory socketFactory, String awsAccessKeyId,
+            String awsSecretAccessKey, String sessionToken) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Invalid pool size: " + poolSize);
+        }
+
+        List<AWSIotMqttClient> clients = new ArrayList<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            String memberId = clientId + "-" + i;
+            if (keyStore != null) {
+                clients.add(new AWSIotMqttClient(clientEndpoint, memberId, keyStore, keyPassword));
+            } else if (socketFactory != null) {
+                clients.add(new AWSIotMqttClient(clientEndpoint, memberId, socketFactory));
+            } else {
+                clients.add(new AWSIotMqttClient(clientEndpoint, memberId, awsAccessKeyId, awsSecretAccessKey,
+                        sessionToken));
+            }
+        }
+        return clients;
+    }
+
+    private static void await(CompletableFuture<Void> future) throws AWSIotException, AWSIotTimeoutException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AWSIotException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AWSIotTimeoutException) {
+                throw (AWSIotTimeoutException) cause;
+            } else if (cause instanceof AWSIotException) {
+                throw (AWSIotException) cause;
+            }
+            throw new AWSIotException(cause);
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client;
+
+/**
+ * Policy applied when a message is published while the offline publish queue
+ * is full. It can be configured through
+ * {@link AWSIotMqttClient#setOfflineQueuePolicy(AWSIotOfflineQueuePolicy)}.
+ */
+public enum AWSIotOfflineQueuePolicy {
+
+    /** The new message is rejected. */
+    REJECT_NEW,
+
+    /** The oldest queued message is dropped to make room for the new one. */
+    DROP_OLDEST,
+
+    /**
+     * The oldest queued message with the lowest QoS level is dropped to make
+     * room for the new one, unless the new message has a lower QoS level than
+     * all the queued messages, in which case it's rejected.
+     */
+    DROP_LOWEST_QOS
+
+}
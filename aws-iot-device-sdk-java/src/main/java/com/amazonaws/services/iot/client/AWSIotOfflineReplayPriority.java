@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client;
+
+/**
+ * Priority between new messages and the messages in the offline publish queue
+ * while the queue is being replayed after the connection is established. It
+ * can be configured through
+ * {@link AWSIotMqttClient#setOfflineReplayPriority(AWSIotOfflineReplayPriority)}.
+ */
+public enum AWSIotOfflineReplayPriority {
+
+    /**
+     * New messages are published right away, ahead of the queued messages,
+     * which are replayed in the background within the configured budget.
+     */
+    LIVE_FIRST,
+
+    /**
+     * New messages are appended to the offline publish queue until it has
+     * been replayed, so all the messages are published in order and within
+     * the configured budget.
+     */
+    REPLAY_FIRST
+
+}
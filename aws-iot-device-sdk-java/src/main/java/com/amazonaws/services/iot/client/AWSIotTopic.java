@@ -17,6 +17,9 @@ package com.amazonaws.services.iot.client;
 
 import com.amazonaws.services.iot.client.core.AwsIotTopicCallback;
 
+import lombok.Getter;
+import lombok.Setter;
+
 /**
  * This class is used for subscribing to a topic in the subscription APIs, such
  * as {@link AWSIotMqttClient#subscribe(AWSIotTopic topic)}.
@@ -35,6 +38,21 @@ import com.amazonaws.services.iot.client.core.AwsIotTopicCallback;
  */
 public class AWSIotTopic extends AWSIotMessage implements AwsIotTopicCallback {
 
+    /**
+     * Whether {@link #onMessage(AWSIotMessage)} is called directly on the
+     * thread receiving the message, skipping the hand-off to the client
+     * thread pool. This lowers the latency of cheap, non-blocking handlers,
+     * but a handler that blocks holds up all the incoming messages and
+     * acknowledgements of the connection, so it must not make synchronous
+     * requests. See also {@link AWSIotMqttClient#isInlineCallbacks()}.
+     *
+     * @param inlineCallback true to call the handler on the receiving thread
+     * @return whether the handler is called on the receiving thread
+     */
+    @Getter
+    @Setter
+    private boolean inlineCallback;
+
     /**
      * Instantiates a new topic object.
      *
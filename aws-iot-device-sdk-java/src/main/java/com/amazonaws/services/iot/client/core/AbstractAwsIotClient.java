@@ -16,25 +16,42 @@
 package com.amazonaws.services.iot.client.core;
 
 import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.net.ssl.SSLSocketFactory;
 
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+
 import com.amazonaws.services.iot.client.AWSIotConfig;
 import com.amazonaws.services.iot.client.AWSIotConnectionStatus;
 import com.amazonaws.services.iot.client.AWSIotDevice;
 import com.amazonaws.services.iot.client.AWSIotException;
 import com.amazonaws.services.iot.client.AWSIotMessage;
+import com.amazonaws.services.iot.client.AWSIotOfflineQueuePolicy;
+import com.amazonaws.services.iot.client.AWSIotOfflineReplayPriority;
 import com.amazonaws.services.iot.client.AWSIotQos;
 import com.amazonaws.services.iot.client.AWSIotTimeoutException;
 import com.amazonaws.services.iot.client.AWSIotTopic;
 import com.amazonaws.services.iot.client.shadow.AbstractAwsIotDevice;
+import com.amazonaws.services.iot.client.shadow.AwsIotDeviceCommandAckListener;
+import com.amazonaws.services.iot.client.shadow.AwsIotDeviceDeltaListener;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -63,14 +80,56 @@ public abstract class AbstractAwsIotClient implements AwsIotConnectionCallback {
     protected int baseRetryDelay = AWSIotConfig.CONNECTION_BASE_RETRY_DELAY;
     protected int maxRetryDelay = AWSIotConfig.CONNECTION_MAX_RETRY_DELAY;
     protected int maxOfflineQueueSize = AWSIotConfig.MAX_OFFLINE_QUEUE_SIZE;
+    protected long maxOfflineQueueBytes = AWSIotConfig.MAX_OFFLINE_QUEUE_BYTES;
+    protected String offlineQueueDirectory;
+    protected AWSIotOfflineQueuePolicy offlineQueuePolicy = AWSIotConfig.OFFLINE_QUEUE_POLICY;
+    protected boolean offlineQueueCoalescing = AWSIotConfig.OFFLINE_QUEUE_COALESCING;
+    protected int offlineReplayRate = AWSIotConfig.OFFLINE_REPLAY_RATE;
+    protected int offlineReplayByteRate = AWSIotConfig.OFFLINE_REPLAY_BYTE_RATE;
+    protected int offlineReplayWindow = AWSIotConfig.OFFLINE_REPLAY_WINDOW;
+    protected AWSIotOfflineReplayPriority offlineReplayPriority = AWSIotConfig.OFFLINE_REPLAY_PRIORITY;
     protected boolean cleanSession = AWSIotConfig.CLEAN_SESSION;
+    protected int maxInflight = AWSIotConfig.MAX_INFLIGHT;
+    protected boolean publishBackpressure = AWSIotConfig.PUBLISH_BACKPRESSURE;
+    protected int publishBackpressureQueueSize = AWSIotConfig.PUBLISH_BACKPRESSURE_QUEUE_SIZE;
+    protected int publishRate = AWSIotConfig.PUBLISH_RATE;
+    protected int publishByteRate = AWSIotConfig.PUBLISH_BYTE_RATE;
+    protected int publishThrottleQueueSize = AWSIotConfig.PUBLISH_THROTTLE_QUEUE_SIZE;
+    protected int timeoutTickDuration = AWSIotConfig.TIMEOUT_TICK_DURATION;
+    protected int timeoutWheelSize = AWSIotConfig.TIMEOUT_WHEEL_SIZE;
+    protected boolean virtualThreadCallbacks = AWSIotConfig.VIRTUAL_THREAD_CALLBACKS;
+    protected int maxConcurrentCallbacks = AWSIotConfig.MAX_CONCURRENT_CALLBACKS;
+    protected boolean orderedCallbacks = AWSIotConfig.ORDERED_CALLBACKS;
+    protected boolean inlineCallbacks = AWSIotConfig.INLINE_CALLBACKS;
     protected AWSIotMessage willMessage;
+    protected MqttClientPersistence persistence;
 
     private final ConcurrentMap<String, AWSIotTopic> subscriptions = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final AwsIotSubscriptionIndex<AWSIotTopic> subscriptionIndex = new AwsIotSubscriptionIndex<>();
     private final ConcurrentMap<String, AbstractAwsIotDevice> devices = new ConcurrentHashMap<>();
     private final AwsIotConnection connection;
 
     private ScheduledExecutorService executionService;
+    @Setter(AccessLevel.NONE)
+    private boolean executionServiceOwned;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private ExecutorService taskExecutor;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private AwsIotTimingWheel timingWheel;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private AwsIotCallbackExecutor callbackExecutor;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final AwsIotSerialExecutor serialExecutor = new AwsIotSerialExecutor(new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            scheduleCallback(command);
+        }
+    });
 
     protected AbstractAwsIotClient(String clientEndpoint, String clientId, KeyStore keyStore, String keyPassword,
                                    boolean enableSdkMetrics) {
@@ -191,17 +250,26 @@ public abstract class AbstractAwsIotClient implements AwsIotConnectionCallback {
     }
 
     public void connect(long timeout, boolean blocking) throws AWSIotException, AWSIotTimeoutException {
-        synchronized (this) {
-            if (executionService == null) {
-                executionService = Executors.newScheduledThreadPool(numOfClientThreads);
-            }
-        }
+        createExecutionService();
 
         AwsIotCompletion completion = new AwsIotCompletion(timeout, !blocking);
         connection.connect(completion);
         completion.get(this);
     }
 
+    public CompletableFuture<Void> connectAsync(long timeout) {
+        createExecutionService();
+
+        AwsIotCompletion completion = new AwsIotCompletion(timeout, true);
+        try {
+            connection.connect(completion);
+            completion.get(this);
+        } catch (AWSIotException | AWSIotTimeoutException e) {
+            return AwsIotCompletion.failedFuture(e);
+        }
+        return completion.getFuture();
+    }
+
     public void disconnect() throws AWSIotException {
         try {
             disconnect(0, true);
@@ -240,9 +308,11 @@ public abstract class AbstractAwsIotClient implements AwsIotConnectionCallback {
 
     public void publish(String topic, AWSIotQos qos, String payload, long timeout)
             throws AWSIotException, AWSIotTimeoutException {
-        AwsIotCompletion completion = new AwsIotCompletion(topic, qos, payload, timeout);
-        connection.publish(completion);
-        completion.get(this);
+        _publish(new AwsIotCompletion(topic, qos, payload, timeout));
+    }
+
+    public CompletableFuture<Void> publishAsync(String topic, AWSIotQos qos, String payload, long timeout) {
+        return publishAsync(new AwsIotCompletion(topic, qos, payload, timeout, true));
     }
 
     public void publish(String topic, byte[] payload) throws AWSIotException {
@@ -264,9 +334,11 @@ public abstract class AbstractAwsIotClient implements AwsIotConnectionCallback {
 
     public void publish(String topic, AWSIotQos qos, byte[] payload, long timeout)
             throws AWSIotException, AWSIotTimeoutException {
-        AwsIotCompletion completion = new AwsIotCompletion(topic, qos, payload, timeout);
-        connection.publish(completion);
-        completion.get(this);
+        _publish(new AwsIotCompletion(topic, qos, payload, timeout));
+    }
+
+    public CompletableFuture<Void> publishAsync(String topic, AWSIotQos qos, byte[] payload, long timeout) {
+        return publishAsync(new AwsIotCompletion(topic, qos, payload, timeout, true));
     }
 
     public void publish(AWSIotMessage message) throws AWSIotException {
@@ -274,16 +346,69 @@ public abstract class AbstractAwsIotClient implements AwsIotConnectionCallback {
     }
 
     public void publish(AWSIotMessage message, long timeout) throws AWSIotException {
-        AwsIotCompletion completion = new AwsIotCompletion(message, timeout, true);
-        connection.publish(completion);
         try {
-            completion.get(this);
+            _publish(new AwsIotCompletion(message, timeout, true));
         } catch (AWSIotTimeoutException e) {
             // We shouldn't get timeout exception because it's asynchronous call
             throw new AwsIotRuntimeException(e);
         }
     }
 
+    public CompletableFuture<Void> publishAsync(AWSIotMessage message, long timeout) {
+        return publishAsync(new AwsIotCompletion(message, timeout, true));
+    }
+
+    private CompletableFuture<Void> publishAsync(AwsIotCompletion completion) {
+        try {
+            _publish(completion);
+        } catch (AWSIotException | AWSIotTimeoutException e) {
+            return AwsIotCompletion.failedFuture(e);
+        }
+        return completion.getFuture();
+    }
+
+    private void _publish(AwsIotCompletion completion) throws AWSIotException, AWSIotTimeoutException {
+        connection.publish(completion);
+        completion.get(this);
+    }
+
+    public CompletableFuture<Void> publishBatch(Collection<? extends AWSIotMessage> messages) {
+        return publishBatch(messages, 0);
+    }
+
+    public CompletableFuture<Void> publishBatch(Collection<? extends AWSIotMessage> messages, long timeout) {
+        final List<AwsIotCompletion> completions = new ArrayList<>(messages.size());
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[messages.size()];
+        for (AWSIotMessage message : messages) {
+            // the batch shares one timeout instead of one per message
+            AwsIotCompletion completion = new AwsIotCompletion(message, 0, true);
+            futures[completions.size()] = completion.getFuture();
+            completions.add(completion);
+        }
+
+        connection.publishBatch(completions);
+
+        CompletableFuture<Void> future = CompletableFuture.allOf(futures);
+        if (timeout > 0 && !future.isDone()) {
+            final AwsIotTimingWheel.Timeout batchTimeout = scheduleTimeout(new Runnable() {
+                @Override
+                public void run() {
+                    for (AwsIotCompletion completion : completions) {
+                        completion.onTimeout();
+                    }
+                }
+            }, timeout);
+
+            future.whenComplete(new BiConsumer<Void, Throwable>() {
+                @Override
+                public void accept(Void result, Throwable cause) {
+                    batchTimeout.cancel();
+                }
+            });
+        }
+        return future;
+    }
+
     public void subscribe(AWSIotTopic topic, boolean blocking) throws AWSIotException {
         try {
             _subscribe(topic, 0, !blocking);
@@ -311,13 +436,37 @@ public abstract class AbstractAwsIotClient implements AwsIotConnectionCallback {
         }
     }
 
+    public CompletableFuture<Void> subscribeAsync(final AWSIotTopic topic, long timeout) {
+        AwsIotCompletion completion = new AwsIotCompletion(topic.getTopic(), topic.getQos(), (byte[]) null, timeout,
+                true);
+        try {
+            _subscribe(completion);
+        } catch (AWSIotException | AWSIotTimeoutException e) {
+            return AwsIotCompletion.failedFuture(e);
+        }
+
+        return completion.getFuture().thenRun(new Runnable() {
+            @Override
+            public void run() {
+                addSubscription(topic);
+            }
+        });
+    }
+
     private void _subscribe(AWSIotTopic topic, long timeout, boolean async)
             throws AWSIotException, AWSIotTimeoutException {
-        AwsIotCompletion completion = new AwsIotCompletion(topic, timeout, async);
+        _subscribe(new AwsIotCompletion(topic, timeout, async));
+        addSubscription(topic);
+    }
+
+    private void _subscribe(AwsIotCompletion completion) throws AWSIotException, AWSIotTimeoutException {
         connection.subscribe(completion);
         completion.get(this);
+    }
 
+    private void addSubscription(AWSIotTopic topic) {
         subscriptions.put(topic.getTopic(), topic);
+        subscriptionIndex.put(new AwsIotTopicFilter(topic.getTopic()), topic);
     }
 
     public void unsubscribe(String topic) throws AWSIotException {
@@ -330,13 +479,19 @@ public abstract class AbstractAwsIotClient implements AwsIotConnectionCallback {
     }
 
     public void unsubscribe(String topic, long timeout) throws AWSIotException, AWSIotTimeoutException {
-        if (subscriptions.remove(topic) == null) {
-            return;
-        }
+        _unsubscribe(new AwsIotCompletion(topic, AWSIotQos.QOS0, timeout));
+    }
 
-        AwsIotCompletion completion = new AwsIotCompletion(topic, AWSIotQos.QOS0, timeout);
-        connection.unsubscribe(completion);
-        completion.get(this);
+    public CompletableFuture<Void> unsubscribeAsync(String topic, long timeout) {
+        AwsIotCompletion completion = new AwsIotCompletion(topic, AWSIotQos.QOS0, (byte[]) null, timeout, true);
+        try {
+            if (!_unsubscribe(completion)) {
+                return CompletableFuture.completedFuture(null);
+            }
+        } catch (AWSIotException | AWSIotTimeoutException e) {
+            return AwsIotCompletion.failedFuture(e);
+        }
+        return completion.getFuture();
     }
 
     public void unsubscribe(AWSIotTopic topic) throws AWSIotException {
@@ -344,64 +499,104 @@ public abstract class AbstractAwsIotClient implements AwsIotConnectionCallback {
     }
 
     public void unsubscribe(AWSIotTopic topic, long timeout) throws AWSIotException {
-        if (subscriptions.remove(topic.getTopic()) == null) {
-            return;
-        }
-
-        AwsIotCompletion completion = new AwsIotCompletion(topic, timeout, true);
-        connection.unsubscribe(completion);
         try {
-            completion.get(this);
+            _unsubscribe(new AwsIotCompletion(topic, timeout, true));
         } catch (AWSIotTimeoutException e) {
             // We shouldn't get timeout exception because it's asynchronous call
             throw new AwsIotRuntimeException(e);
         }
     }
 
+    private boolean _unsubscribe(AwsIotCompletion completion) throws AWSIotException, AWSIotTimeoutException {
+        String topic = completion.getTopic();
+        if (subscriptions.remove(topic) == null) {
+            return false;
+        }
+        subscriptionIndex.remove(new AwsIotTopicFilter(topic));
+
+        connection.unsubscribe(completion);
+        completion.get(this);
+        return true;
+    }
+
     public boolean topicFilterMatch(String topicFilter, String topic) {
         if (topicFilter == null || topic == null) {
             return false;
         }
 
-        String[] filterTokens = topicFilter.split("/");
-        String[] topicTokens = topic.split("/");
-        if (filterTokens.length > topicTokens.length) {
-            return false;
+        return new AwsIotTopicFilter(topicFilter).matches(topic);
+    }
+
+    public void dispatch(final AWSIotMessage message) {
+        if (!deliver(message)) {
+            LOGGER.warning("Unexpected message received from topic " + message.getTopic());
         }
+    }
+
+    public boolean deliver(final AWSIotMessage message) {
+        List<AWSIotTopic> topics = subscriptionIndex.match(message.getTopic());
 
-        for (int i = 0; i < filterTokens.length; i++) {
-            if (filterTokens[i].equals("#")) {
-                // '#' must be the last character
-                return ((i + 1) == filterTokens.length);
+        for (final AWSIotTopic topic : topics) {
+            if (inlineCallbacks || topic.isInlineCallback()) {
+                try {
+                    topic.onMessage(message);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Message callback failed for topic " + topic.getTopic(), e);
+                }
+                continue;
             }
 
-            if (!(filterTokens[i].equals(topicTokens[i]) || filterTokens[i].equals("+"))) {
-                return false;
+            Runnable callback = new Runnable() {
+                @Override
+                public void run() {
+                    topic.onMessage(message);
+                }
+            };
+
+            if (orderedCallbacks) {
+                serialExecutor.execute(getOrderingKey(topic), callback);
+            } else {
+                scheduleCallback(callback);
             }
         }
 
-        return (filterTokens.length == topicTokens.length);
+        return !topics.isEmpty();
     }
 
-    public void dispatch(final AWSIotMessage message) {
-        boolean matches = false;
-
-        for (String topicFilter : subscriptions.keySet()) {
-            if (topicFilterMatch(topicFilter, message.getTopic())) {
-                final AWSIotTopic topic = subscriptions.get(topicFilter);
-                scheduleTask(new Runnable() {
-                    @Override
-                    public void run() {
-                        topic.onMessage(message);
-                    }
-                });
-                matches = true;
-            }
+    private static Object getOrderingKey(AWSIotTopic topic) {
+        // shadow messages are ordered per device across all its topics, so
+        // e.g. a delta isn't applied before an earlier get response
+        if (topic instanceof AwsIotDeviceDeltaListener) {
+            return ((AwsIotDeviceDeltaListener) topic).getDevice();
         }
-
-        if (!matches) {
-            LOGGER.warning("Unexpected message received from topic " + message.getTopic());
+        if (topic instanceof AwsIotDeviceCommandAckListener) {
+            return ((AwsIotDeviceCommandAckListener) topic).getDevice();
         }
+        return topic;
+    }
+
+    public long getExactDispatchCount() {
+        return subscriptionIndex.getExactMatchCount();
+    }
+
+    public long getWildcardDispatchCount() {
+        return subscriptionIndex.getWildcardMatchCount();
+    }
+
+    public long getUnmatchedDispatchCount() {
+        return subscriptionIndex.getUnmatchedCount();
+    }
+
+    public long getThrottledPublishCount() {
+        return connection.getPublishThrottle().getThrottledCount();
+    }
+
+    public long getThrottledPublishTime() {
+        return connection.getPublishThrottle().getThrottledTime();
+    }
+
+    public long getRejectedPublishCount() {
+        return connection.getPublishThrottle().getRejectedCount();
     }
 
     public void attach(AWSIotDevice device) throws AWSIotException {
@@ -488,27 +683,180 @@ public abstract class AbstractAwsIotClient implements AwsIotConnectionCallback {
         }
 
         subscriptions.clear();
+        subscriptionIndex.clear();
         devices.clear();
 
-        executionService.shutdown();
+        // pending timeouts are handed over to the thread pool, which still
+        // executes delayed tasks after it's shut down
+        for (AwsIotTimingWheel.Timeout timeout : timingWheel.stop()) {
+            executionService.schedule(timeout.getTask(), Math.max(timeout.getRemainingDelay(), 0),
+                    TimeUnit.MILLISECONDS);
+        }
+
+        // a thread pool supplied by the application may be shared with other
+        // clients, so it's left to the application to shut it down
+        if (executionServiceOwned) {
+            executionService.shutdown();
+            taskExecutor.shutdown();
+        }
+    }
+
+    public synchronized void setExecutionService(ScheduledExecutorService executionService) {
+        this.executionService = executionService;
+        this.taskExecutor = executionService;
+        this.executionServiceOwned = false;
+    }
+
+    private synchronized void createExecutionService() {
+        if (executionService == null || (executionServiceOwned && executionService.isShutdown())) {
+            // tasks without delay, i.e. almost all of them, go to a plain
+            // thread pool, skipping the delay queue of the scheduled one,
+            // which only hands delayed tasks over to it
+            executionService = Executors.newSingleThreadScheduledExecutor();
+            taskExecutor = Executors.newFixedThreadPool(numOfClientThreads);
+            executionServiceOwned = true;
+        }
+
+        if (timingWheel == null || !timingWheel.isStarted()) {
+            timingWheel = new AwsIotTimingWheel(timeoutTickDuration, timeoutWheelSize);
+            timingWheel.start(executionService, taskExecutor);
+        }
+
+        if (!virtualThreadCallbacks) {
+            callbackExecutor = null;
+        } else if (callbackExecutor == null) {
+            if (AwsIotCallbackExecutor.isSupported()) {
+                callbackExecutor = new AwsIotCallbackExecutor(maxConcurrentCallbacks);
+            } else {
+                LOGGER.warning("Virtual threads are not supported, callbacks will run on the client thread pool");
+            }
+        }
     }
 
     public Future<?> scheduleTask(Runnable runnable) {
-        return scheduleTimeoutTask(runnable, 0);
+        if (taskExecutor == null) {
+            throw new AwsIotRuntimeException("Client is not connected");
+        }
+        return taskExecutor.submit(runnable);
+    }
+
+    public void scheduleCallback(Runnable runnable) {
+        AwsIotCallbackExecutor executor = callbackExecutor;
+        if (executor != null) {
+            executor.execute(runnable);
+        } else {
+            scheduleTask(runnable);
+        }
+    }
+
+    public void scheduleCompletion(Runnable runnable) {
+        AwsIotCallbackExecutor executor = callbackExecutor;
+        if (executor != null) {
+            executor.executeCompletion(runnable);
+        } else {
+            scheduleTask(runnable);
+        }
     }
 
     public Future<?> scheduleTimeoutTask(Runnable runnable, long timeout) {
         if (executionService == null) {
             throw new AwsIotRuntimeException("Client is not connected");
         }
-        return executionService.schedule(runnable, timeout, TimeUnit.MILLISECONDS);
+        if (timeout <= 0) {
+            return scheduleTask(runnable);
+        }
+        return executionService.schedule(toTaskExecutor(runnable), timeout, TimeUnit.MILLISECONDS);
+    }
+
+    public AwsIotTimingWheel.Timeout scheduleTimeout(Runnable runnable, long timeout) {
+        if (timingWheel == null) {
+            throw new AwsIotRuntimeException("Client is not connected");
+        }
+        return timingWheel.schedule(runnable, timeout);
     }
 
     public Future<?> scheduleRoutineTask(Runnable runnable, long initialDelay, long period) {
         if (executionService == null) {
             throw new AwsIotRuntimeException("Client is not connected");
         }
-        return executionService.scheduleAtFixedRate(runnable, initialDelay, period, TimeUnit.MILLISECONDS);
+        if (taskExecutor == executionService) {
+            return executionService.scheduleAtFixedRate(runnable, initialDelay, period, TimeUnit.MILLISECONDS);
+        }
+
+        RoutineTask task = new RoutineTask(runnable, taskExecutor);
+        task.future = executionService.scheduleAtFixedRate(task, initialDelay, period, TimeUnit.MILLISECONDS);
+        return task.future;
+    }
+
+    private Runnable toTaskExecutor(final Runnable runnable) {
+        final Executor executor = taskExecutor;
+        if (executor == executionService) {
+            return runnable;
+        }
+
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executor.execute(runnable);
+                } catch (RejectedExecutionException e) {
+                    // the thread pool has been shut down with the connection
+                    runnable.run();
+                }
+            }
+        };
+    }
+
+    /**
+     * A periodic task handed over from the scheduler to the task thread pool
+     * on each run. Unlike tasks run by the scheduler itself, runs could
+     * overlap on the pool, so a run is skipped while the previous one is
+     * still in progress. Runs handed over before the task was cancelled don't
+     * start afterwards, and runs rejected by a pool that has been shut down
+     * are dropped.
+     */
+    private static class RoutineTask implements Runnable {
+
+        private final Runnable runnable;
+        private final Executor executor;
+        private final AtomicBoolean running = new AtomicBoolean();
+        private volatile Future<?> future;
+
+        private RoutineTask(Runnable runnable, Executor executor) {
+            this.runnable = runnable;
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            if (isCancelled() || !running.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (!isCancelled()) {
+                                runnable.run();
+                            }
+                        } finally {
+                            running.set(false);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                running.set(false);
+            }
+        }
+
+        private boolean isCancelled() {
+            // the future isn't set yet if the first run starts right away
+            Future<?> f = future;
+            return f != null && f.isCancelled();
+        }
+
     }
 
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class executes user callbacks, each on its own virtual thread, so a
+ * slow callback doesn't hold up the others. The number of message callbacks
+ * running at the same time is bounded by a semaphore; callbacks beyond the
+ * limit wait for a permit on their virtual thread, which costs no platform
+ * thread.
+ * <p>
+ * Request completions aren't bounded, as a message callback may be blocked
+ * in a synchronous request waiting for one, and holding the completion back
+ * would deadlock once all the permits are taken by such callbacks.
+ * </p>
+ * <p>
+ * Virtual threads are only available from JDK 21, while the SDK is built for
+ * Java 8, so they're created through reflection. {@link #isSupported()} tells
+ * whether the running JVM provides them.
+ * </p>
+ */
+public class AwsIotCallbackExecutor implements Executor {
+
+    private static final Logger LOGGER = Logger.getLogger(AwsIotCallbackExecutor.class.getName());
+
+    private static final String THREAD_NAME_PREFIX = "aws-iot-callback-";
+
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = createVirtualThreadFactory();
+
+    private final Semaphore permits;
+
+    /**
+     * Instantiates a new callback executor.
+     *
+     * @param maxConcurrency
+     *            the maximum number of callbacks running at the same time
+     */
+    public AwsIotCallbackExecutor(int maxConcurrency) {
+        if (VIRTUAL_THREAD_FACTORY == null) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JVM");
+        }
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Invalid maximum number of concurrent callbacks: " + maxConcurrency);
+        }
+
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    /**
+     * Checks whether the running JVM supports virtual threads.
+     *
+     * @return true if virtual threads are supported
+     */
+    public static boolean isSupported() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    /**
+     * Executes a message callback on a new virtual thread, once fewer than the
+     * maximum number of message callbacks are running.
+     *
+     * @param command
+     *            the callback
+     */
+    @Override
+    public void execute(final Runnable command) {
+        VIRTUAL_THREAD_FACTORY.newThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                try {
+                    command.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Callback failed", e);
+                } finally {
+                    permits.release();
+                }
+            }
+        }).start();
+    }
+
+    /**
+     * Executes a request completion on a new virtual thread right away.
+     *
+     * @param command
+     *            the completion
+     */
+    public void executeCompletion(final Runnable command) {
+        VIRTUAL_THREAD_FACTORY.newThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    command.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Callback failed", e);
+                }
+            }
+        }).start();
+    }
+
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            // Thread.ofVirtual().name(THREAD_NAME_PREFIX, 0).factory()
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method name = builderClass.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, THREAD_NAME_PREFIX, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+}
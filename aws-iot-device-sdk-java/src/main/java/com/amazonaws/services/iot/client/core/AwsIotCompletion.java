@@ -15,7 +15,10 @@
 
 package com.amazonaws.services.iot.client.core;
 
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 import com.amazonaws.services.iot.client.AWSIotException;
 import com.amazonaws.services.iot.client.AWSIotMessage;
@@ -27,6 +30,19 @@ import com.amazonaws.services.iot.client.AWSIotTimeoutException;
  * return either synchronously or asynchronously the result, e.g. success,
  * failure, or timeout. It's used by most of the APIs to implement blocking and
  * non-blocking calls with timeout support.
+ * <p>
+ * The result is also made available through a {@link CompletableFuture}, see
+ * {@link #getFuture()}, which is completed normally on success, or
+ * exceptionally with {@link AWSIotException} or {@link AWSIotTimeoutException}
+ * on failure or timeout respectively.
+ * </p>
+ * <p>
+ * The request completes exactly once. The outcome is recorded in a single
+ * atomic state field with a compare-and-set, so completion doesn't take any
+ * lock. Synchronous callers are parked with {@link LockSupport} until the
+ * request completes or its deadline is reached, and no timeout task is
+ * scheduled for them.
+ * </p>
  */
 public class AwsIotCompletion extends AWSIotMessage {
 
@@ -39,17 +55,25 @@ public class AwsIotCompletion extends AWSIotMessage {
     /** whether the request is asynchronous or not. */
     protected final boolean isAsync;
 
-    /** The future object of the timeout task. */
-    protected Future<?> timeoutTask;
+    /** The timeout task scheduled in the client timing wheel. */
+    protected volatile AwsIotTimingWheel.Timeout timeoutTask;
 
-    /** Indicates whether the request has completed successfully. */
-    protected boolean hasSuccess;
+    /** The future object completed with the result of the request. */
+    protected final CompletableFuture<Void> future = new CompletableFuture<>();
 
-    /** Indicates whether the request has completed with failure. */
-    protected boolean hasFailure;
+    private static final int PENDING = 0;
+    private static final int SUCCESS = 1;
+    private static final int FAILURE = 2;
+    private static final int TIMEOUT = 3;
 
-    /** Indicates whether the request has timed out. */
-    protected boolean hasTimeout;
+    private static final AtomicIntegerFieldUpdater<AwsIotCompletion> STATE = AtomicIntegerFieldUpdater
+            .newUpdater(AwsIotCompletion.class, "state");
+
+    /** The state of the request, either pending or one of the outcomes. */
+    private volatile int state = PENDING;
+
+    /** The thread blocked in a synchronous call, if any. */
+    private volatile Thread waiter;
 
     /**
      * Instantiates a new completion object with a synchronous request.
@@ -112,6 +136,54 @@ public class AwsIotCompletion extends AWSIotMessage {
         this.isAsync = false;
     }
 
+    /**
+     * Instantiates a new completion object either synchronous or asynchronous
+     * request based on the <code>isAsync</code> argument.
+     *
+     * @param topic
+     *            the topic of the request
+     * @param qos
+     *            the QoS of the request
+     * @param payload
+     *            the string payload of the request
+     * @param timeout
+     *            the timeout in milliseconds for the request. If timeout is 0
+     *            or less, the request will never be timed out.
+     * @param isAsync
+     *            whether or not the request is asynchronous
+     */
+    public AwsIotCompletion(String topic, AWSIotQos qos, String payload, long timeout, boolean isAsync) {
+        super(topic, qos, payload);
+
+        this.timeout = timeout;
+        this.request = null;
+        this.isAsync = isAsync;
+    }
+
+    /**
+     * Instantiates a new completion object either synchronous or asynchronous
+     * request based on the <code>isAsync</code> argument.
+     *
+     * @param topic
+     *            the topic of the request
+     * @param qos
+     *            the QoS of the request
+     * @param payload
+     *            the byte array payload of the request
+     * @param timeout
+     *            the timeout in milliseconds for the request. If timeout is 0
+     *            or less, the request will never be timed out.
+     * @param isAsync
+     *            whether or not the request is asynchronous
+     */
+    public AwsIotCompletion(String topic, AWSIotQos qos, byte[] payload, long timeout, boolean isAsync) {
+        super(topic, qos, payload);
+
+        this.timeout = timeout;
+        this.request = null;
+        this.isAsync = isAsync;
+    }
+
     /**
      * Instantiates a new completion object either synchronous or asynchronous
      * request based on the <code>isAsync</code> argument.
@@ -145,7 +217,8 @@ public class AwsIotCompletion extends AWSIotMessage {
      *            whether or not the request is asynchronous
      */
     public AwsIotCompletion(AWSIotMessage req, long timeout, boolean isAsync) {
-        super(req.getTopic(), req.getQos(), req.getPayload());
+        super(req.getTopic(), req.getQos());
+        setSharedPayload(req.getSharedPayload());
 
         this.request = req;
         this.timeout = timeout;
@@ -169,53 +242,94 @@ public class AwsIotCompletion extends AWSIotMessage {
      *             request has timed out.
      */
     public void get(AbstractAwsIotClient client) throws AWSIotException, AWSIotTimeoutException {
-        synchronized (this) {
-            if (hasSuccess || hasFailure || hasTimeout) {
-                // operation has completed before get() is called
-                if (!isAsync) {
-                    if (hasFailure) {
-                        throw new AWSIotException("Error happened when processing command " + topic);
-                    }
-                    if (hasTimeout) {
-                        throw new AWSIotTimeoutException("Request timed out when processing command " + topic);
-                    }
+        if (state != PENDING) {
+            // operation has completed before get() is called
+            if (!isAsync) {
+                if (state == FAILURE) {
+                    throw new AWSIotException("Error happened when processing command " + topic);
+                }
+                if (state == TIMEOUT) {
+                    throw new AWSIotTimeoutException("Request timed out when processing command " + topic);
                 }
-                return;
             }
+            return;
+        }
 
+        // if it's an asynchronous request, we don't block the calling
+        // thread
+        if (isAsync) {
             if (timeout > 0) {
-                timeoutTask = client.scheduleTimeoutTask(new Runnable() {
+                timeoutTask = client.scheduleTimeout(new Runnable() {
                     @Override
                     public void run() {
                         onTimeout();
                     }
                 }, timeout);
-            }
 
-            // if it's an asynchronous request, we don't block the calling
-            // thread
-            if (isAsync) {
-                return;
-            }
-
-            while (!hasSuccess && !hasFailure && !hasTimeout) {
-                try {
-                    wait();
-                } catch (InterruptedException e) {
+                // the request may have completed before the task was set
+                if (state != PENDING) {
                     cancelTimeoutTask();
-                    throw new AWSIotException(e);
                 }
             }
+            return;
+        }
 
-            cancelTimeoutTask();
+        waiter = Thread.currentThread();
+        long deadline = (timeout > 0) ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+        try {
+            while (state == PENDING) {
+                if (timeout > 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        onTimeout();
+                        break;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                } else {
+                    LockSupport.park(this);
+                }
 
-            if (hasFailure) {
-                throw new AWSIotException(errorCode, errorMessage);
-            }
-            if (hasTimeout) {
-                throw new AWSIotTimeoutException("Request timed out when processing request " + topic);
+                if (Thread.interrupted()) {
+                    throw new AWSIotException(new InterruptedException());
+                }
             }
+        } finally {
+            waiter = null;
         }
+
+        if (state == FAILURE) {
+            throw new AWSIotException(errorCode, errorMessage);
+        }
+        if (state == TIMEOUT) {
+            throw new AWSIotTimeoutException("Request timed out when processing request " + topic);
+        }
+    }
+
+    /**
+     * Gets the future object that is completed when the request has completed
+     * successfully, failed, or timed out. For asynchronous requests, the
+     * timeout is only scheduled when {@link #get(AbstractAwsIotClient)} is
+     * called.
+     *
+     * @return the future object of the request
+     */
+    public CompletableFuture<Void> getFuture() {
+        return future;
+    }
+
+    /**
+     * Creates a future object that has already completed with the exception.
+     *
+     * @param <T>
+     *            the type of the result
+     * @param cause
+     *            the exception
+     * @return the future object
+     */
+    public static <T> CompletableFuture<T> failedFuture(Throwable cause) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
+        return future;
     }
 
     /*
@@ -225,21 +339,13 @@ public class AwsIotCompletion extends AWSIotMessage {
      */
     @Override
     public void onSuccess() {
-        synchronized (this) {
-            if (hasSuccess || hasFailure || hasTimeout) {
-                return;
-            }
-
-            hasSuccess = true;
-            cancelTimeoutTask();
-
-            if (!isAsync) {
-                notify();
-                return;
-            }
+        if (!complete(SUCCESS)) {
+            return;
         }
 
-        if (request != null) {
+        future.complete(null);
+
+        if (isAsync && request != null) {
             request.onSuccess();
         }
     }
@@ -251,21 +357,13 @@ public class AwsIotCompletion extends AWSIotMessage {
      */
     @Override
     public void onFailure() {
-        synchronized (this) {
-            if (hasSuccess || hasFailure || hasTimeout) {
-                return;
-            }
-
-            hasFailure = true;
-            cancelTimeoutTask();
-
-            if (!isAsync) {
-                notify();
-                return;
-            }
+        if (!complete(FAILURE)) {
+            return;
         }
 
-        if (request != null) {
+        future.completeExceptionally(new AWSIotException(errorCode, errorMessage));
+
+        if (isAsync && request != null) {
             request.setErrorCode(errorCode);
             request.setErrorMessage(errorMessage);
             request.onFailure();
@@ -279,31 +377,49 @@ public class AwsIotCompletion extends AWSIotMessage {
      */
     @Override
     public void onTimeout() {
-        synchronized (this) {
-            if (hasSuccess || hasFailure || hasTimeout) {
-                return;
-            }
+        if (!complete(TIMEOUT)) {
+            return;
+        }
 
-            hasTimeout = true;
-            cancelTimeoutTask();
+        future.completeExceptionally(
+                new AWSIotTimeoutException("Request timed out when processing request " + topic));
 
-            if (!isAsync) {
-                notify();
-                return;
-            }
+        if (isAsync && request != null) {
+            request.onTimeout();
         }
+    }
 
-        if (request != null) {
-            request.onTimeout();
+    /**
+     * Moves the request from pending to the terminal state, and wakes up the
+     * waiting thread of a synchronous call. Only the first transition
+     * succeeds.
+     *
+     * @param terminalState
+     *            the terminal state
+     * @return true if the request was pending, false if it had already
+     *         completed
+     */
+    private boolean complete(int terminalState) {
+        if (!STATE.compareAndSet(this, PENDING, terminalState)) {
+            return false;
+        }
+
+        cancelTimeoutTask();
+
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
         }
+        return true;
     }
 
     /**
      * Cancel timeout task.
      */
     private void cancelTimeoutTask() {
-        if (timeoutTask != null && !timeoutTask.isCancelled()) {
-            timeoutTask.cancel(false);
+        AwsIotTimingWheel.Timeout task = timeoutTask;
+        if (task != null) {
+            task.cancel();
         }
     }
 
@@ -15,14 +15,18 @@
 
 package com.amazonaws.services.iot.client.core;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.amazonaws.services.iot.client.AWSIotConnectionStatus;
 import com.amazonaws.services.iot.client.AWSIotException;
 import com.amazonaws.services.iot.client.AWSIotMessage;
+import com.amazonaws.services.iot.client.AWSIotOfflineReplayPriority;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -90,12 +94,26 @@ public abstract class AwsIotConnection implements AwsIotConnectionCallback {
 
     /**
      * The offline publish queue holding messages while the connection is being
-     * established.
-     * 
-     * @return the current offline publish queue
+     * established. It's created when it's first used, so it's configured with
+     * the client settings at that time.
+     */
+    private AwsIotOfflineQueue publishQueue;
+
+    /**
+     * The queue holding messages waiting for an in-flight slot when publish
+     * backpressure is enabled. It's bounded by the client's backpressure queue
+     * size.
+     *
+     * @return the current in-flight wait queue
      */
     @Getter
-    private ConcurrentLinkedQueue<AWSIotMessage> publishQueue = new ConcurrentLinkedQueue<>();
+    private ConcurrentLinkedQueue<AWSIotMessage> inflightWaitQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of messages in the in-flight wait queue, guarded by the
+     * connection lock.
+     */
+    private int inflightWaitQueueSize;
 
     /**
      * The offline subscribe request queue holding messages while the connection
@@ -104,7 +122,7 @@ public abstract class AwsIotConnection implements AwsIotConnectionCallback {
      * @return the current offline subscribe request queue
      */
     @Getter
-    private ConcurrentLinkedQueue<AWSIotMessage> subscribeQueue = new ConcurrentLinkedQueue<>();
+    private final AwsIotOfflineQueue subscribeQueue;
 
     /**
      * The offline unsubscribe request queue holding messages while the
@@ -113,7 +131,21 @@ public abstract class AwsIotConnection implements AwsIotConnectionCallback {
      * @return the current offline unsubscribe request queue
      */
     @Getter
-    private ConcurrentLinkedQueue<AWSIotMessage> unsubscribeQueue = new ConcurrentLinkedQueue<>();
+    private final AwsIotOfflineQueue unsubscribeQueue;
+
+    /**
+     * The background replay of the offline queues after the connection is
+     * established.
+     */
+    private final AwsIotOfflineReplay offlineReplay;
+
+    /**
+     * The throttle limiting the rate of messages published on the connection.
+     *
+     * @return the publish throttle
+     */
+    @Getter
+    private final AwsIotPublishThrottle publishThrottle;
 
     /**
      * Instantiates a new connection object.
@@ -123,6 +155,10 @@ public abstract class AwsIotConnection implements AwsIotConnectionCallback {
      */
     public AwsIotConnection(AbstractAwsIotClient client) {
         this.client = client;
+        this.subscribeQueue = new AwsIotMemoryOfflineQueue(client);
+        this.unsubscribeQueue = new AwsIotMemoryOfflineQueue(client);
+        this.offlineReplay = new AwsIotOfflineReplay(client, this);
+        this.publishThrottle = new AwsIotPublishThrottle(client, this);
     }
 
     /**
@@ -161,6 +197,14 @@ public abstract class AwsIotConnection implements AwsIotConnectionCallback {
      */
     protected abstract void publishMessage(AWSIotMessage message) throws AWSIotException, AwsIotRetryableException;
 
+    /**
+     * Gets the number of messages that have been sent but not yet
+     * acknowledged by the server.
+     *
+     * @return the number of in-flight messages
+     */
+    protected abstract int getInflightMessageCount();
+
     /**
      * Abstract method which is called to subscribe to a topic.
      *
@@ -199,18 +243,211 @@ public abstract class AwsIotConnection implements AwsIotConnectionCallback {
      *             process the request
      */
     public void publish(AWSIotMessage message) throws AWSIotException {
+        if (connectionStatus == AWSIotConnectionStatus.CONNECTED && !publishThrottle.admit(message)) {
+            // published by the throttle once the rate allows it
+            return;
+        }
+
+        publishAdmitted(message);
+    }
+
+    /**
+     * Publishes a message that has been admitted by the publish throttle.
+     *
+     * @param message
+     *            the message to be published
+     * @throws AWSIotException
+     *             this exception is thrown when the underneath failed to
+     *             process the request
+     */
+    void publishAdmitted(AWSIotMessage message) throws AWSIotException {
+        if (client.getOfflineReplayPriority() == AWSIotOfflineReplayPriority.REPLAY_FIRST
+                && offlineReplay.isRunning()) {
+            // published after the queued messages, in order
+            if (!queueOfflineMessage(message)) {
+                throw new AWSIotException("Offline publish queue is full");
+            }
+            offlineReplay.start();
+            return;
+        }
+
+        if (client.isPublishBackpressure() && connectionStatus == AWSIotConnectionStatus.CONNECTED
+                && !inflightWaitQueue.isEmpty()) {
+            // keep the order of the messages already waiting for a slot
+            queueWaitingMessage(message);
+            publishWaitingMessages();
+            return;
+        }
+
         try {
             publishMessage(message);
+        } catch (AwsIotInflightLimitException e) {
+            if (!client.isPublishBackpressure()) {
+                throw e;
+            }
+
+            // the message is published when an in-flight slot frees up
+            queueWaitingMessage(message);
+            publishWaitingMessages();
         } catch (AwsIotRetryableException e) {
-            if (client.getMaxOfflineQueueSize() > 0 && publishQueue.size() < client.getMaxOfflineQueueSize()) {
-                publishQueue.add(message);
-            } else {
+            if (!queueOfflineMessage(message)) {
                 LOGGER.info("Failed to publish message to " + message.getTopic());
                 throw new AWSIotException(e);
             }
         }
     }
 
+    private boolean queueOfflineMessage(AWSIotMessage message) {
+        AwsIotOfflineQueue queue = getPublishQueue();
+        if (client.getMaxOfflineQueueSize() > 0 && queue.offer(message)) {
+            LOGGER.fine("Number of queued offline messages: " + queue.size());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Publishes a batch of messages in one call. Unlike
+     * {@link #publish(AWSIotMessage)}, errors are not thrown but reported
+     * through the {@link AWSIotMessage#onFailure()} callback of the messages
+     * that couldn't be published, so the rest of the batch is still sent.
+     *
+     * @param messages
+     *            the messages to be published
+     */
+    public void publishBatch(Collection<? extends AWSIotMessage> messages) {
+        for (AWSIotMessage message : messages) {
+            try {
+                publish(message);
+            } catch (AWSIotException e) {
+                message.setErrorMessage(e.getMessage());
+                message.onFailure();
+            }
+        }
+    }
+
+    /**
+     * Gets the offline publish queue, creating it if it doesn't exist. When
+     * an offline queue directory is configured, the queue is stored in
+     * memory-mapped files in that directory and messages left by the previous
+     * process are recovered; otherwise, it's kept on the heap.
+     *
+     * @return the offline publish queue
+     */
+    public synchronized AwsIotOfflineQueue getPublishQueue() {
+        if (publishQueue == null) {
+            if (client.getOfflineQueueDirectory() == null) {
+                publishQueue = new AwsIotMemoryOfflineQueue(client, client.getOfflineQueuePolicy(),
+                        client.isOfflineQueueCoalescing());
+            } else {
+                try {
+                    publishQueue = new AwsIotJournalPublishQueue(client, new File(client.getOfflineQueueDirectory()),
+                            client.getMaxOfflineQueueBytes(), client.getOfflineQueuePolicy());
+                } catch (IOException e) {
+                    throw new AwsIotRuntimeException(e);
+                }
+            }
+        }
+        return publishQueue;
+    }
+
+    /**
+     * Called when an in-flight message has been acknowledged, or has failed,
+     * so the messages waiting for an in-flight slot can be published.
+     */
+    public void onPublishComplete() {
+        if (client.isPublishBackpressure()) {
+            publishWaitingMessages();
+        }
+        offlineReplay.resume();
+    }
+
+    /**
+     * Publishes the messages waiting for an in-flight slot, in order, until
+     * there are no more free slots. It's called when an in-flight message has
+     * been acknowledged or the connection is established. Messages whose
+     * requests have already completed, e.g. timed out, while waiting are
+     * dropped.
+     */
+    public synchronized void publishWaitingMessages() {
+        AWSIotMessage message;
+        while ((message = inflightWaitQueue.peek()) != null) {
+            if (isCompleted(message)) {
+                pollWaitingMessage();
+                continue;
+            }
+
+            try {
+                publishMessage(message);
+            } catch (AwsIotInflightLimitException e) {
+                // wait for the next acknowledgement
+                return;
+            } catch (AwsIotRetryableException e) {
+                // the connection is lost, so the messages can't wait for it
+                releaseWaitingMessages(true);
+                return;
+            } catch (AWSIotException e) {
+                LOGGER.info("Failed to publish message to " + message.getTopic());
+                message.setErrorMessage(e.getMessage());
+                message.onFailure();
+            }
+            pollWaitingMessage();
+        }
+    }
+
+    private synchronized void queueWaitingMessage(AWSIotMessage message) throws AWSIotException {
+        if (inflightWaitQueueSize >= client.getPublishBackpressureQueueSize()) {
+            // requests that completed while waiting, e.g. timed out, are
+            // otherwise only dropped once they reach the head of the queue
+            Iterator<AWSIotMessage> it = inflightWaitQueue.iterator();
+            while (it.hasNext()) {
+                if (isCompleted(it.next())) {
+                    it.remove();
+                    inflightWaitQueueSize--;
+                }
+            }
+
+            if (inflightWaitQueueSize >= client.getPublishBackpressureQueueSize()) {
+                throw new AWSIotException("Publish backpressure queue is full");
+            }
+        }
+
+        inflightWaitQueue.add(message);
+        inflightWaitQueueSize++;
+    }
+
+    private void pollWaitingMessage() {
+        if (inflightWaitQueue.poll() != null) {
+            inflightWaitQueueSize--;
+        }
+    }
+
+    /**
+     * Empties the in-flight wait queue when the connection is lost or closed,
+     * so the waiting requests don't wait for a connection that may never come
+     * back. The messages are moved to the offline publish queue if allowed,
+     * and fail otherwise.
+     *
+     * @param queueOffline
+     *            whether the messages may be moved to the offline queue
+     */
+    private synchronized void releaseWaitingMessages(boolean queueOffline) {
+        AWSIotMessage message;
+        while ((message = inflightWaitQueue.poll()) != null) {
+            inflightWaitQueueSize--;
+            if (isCompleted(message) || (queueOffline && queueOfflineMessage(message))) {
+                continue;
+            }
+
+            message.setErrorMessage("Connection lost before the message was published");
+            message.onFailure();
+        }
+    }
+
+    private static boolean isCompleted(AWSIotMessage message) {
+        return message instanceof AwsIotCompletion && ((AwsIotCompletion) message).getFuture().isDone();
+    }
+
     /**
      * Updates credentials for the connection, which will be used for new
      * connections.
@@ -240,8 +477,8 @@ public abstract class AwsIotConnection implements AwsIotConnectionCallback {
         try {
             subscribeTopic(message);
         } catch (AwsIotRetryableException e) {
-            if (client.getMaxOfflineQueueSize() > 0 && subscribeQueue.size() < client.getMaxOfflineQueueSize()) {
-                subscribeQueue.add(message);
+            if (client.getMaxOfflineQueueSize() > 0 && subscribeQueue.offer(message)) {
+                LOGGER.fine("Number of queued offline subscribe requests: " + subscribeQueue.size());
             } else {
                 LOGGER.info("Failed to subscribe to " + message.getTopic());
                 throw new AWSIotException(e);
@@ -263,8 +500,8 @@ public abstract class AwsIotConnection implements AwsIotConnectionCallback {
         try {
             unsubscribeTopic(message);
         } catch (AwsIotRetryableException e) {
-            if (client.getMaxOfflineQueueSize() > 0 && unsubscribeQueue.size() < client.getMaxOfflineQueueSize()) {
-                unsubscribeQueue.add(message);
+            if (client.getMaxOfflineQueueSize() > 0 && unsubscribeQueue.offer(message)) {
+                LOGGER.fine("Number of queued offline unsubscribe requests: " + unsubscribeQueue.size());
             } else {
                 LOGGER.info("Failed to unsubscribe to " + message.getTopic());
                 throw new AWSIotException(e);
@@ -326,30 +563,10 @@ public abstract class AwsIotConnection implements AwsIotConnectionCallback {
 
         cancelRetry();
 
-        // process offline messages
-        try {
-            while (subscribeQueue.size() > 0) {
-                AWSIotMessage message = subscribeQueue.poll();
-                subscribeTopic(message);
-            }
-            while (unsubscribeQueue.size() > 0) {
-                AWSIotMessage message = unsubscribeQueue.poll();
-                unsubscribeTopic(message);
-            }
-            while (publishQueue.size() > 0) {
-                AWSIotMessage message = publishQueue.poll();
-                publishMessage(message);
-            }
-        } catch (AWSIotException | AwsIotRetryableException e) {
-            // should close the connection if we can't send message when
-            // connection is good
-            LOGGER.log(Level.WARNING, "Failed to send queued messages, will disconnect", e);
-            try {
-                closeConnection(null);
-            } catch (AWSIotException ie) {
-                LOGGER.log(Level.WARNING, "Failed to disconnect", ie);
-            }
-        }
+        // process offline messages in the background, paced so the backlog
+        // doesn't get the client throttled
+        offlineReplay.start();
+        publishWaitingMessages();
 
         client.onConnectionSuccess();
 
@@ -372,6 +589,7 @@ public abstract class AwsIotConnection implements AwsIotConnectionCallback {
         connectionStatus = AWSIotConnectionStatus.DISCONNECTED;
 
         cancelRetry();
+        releaseWaitingMessages(shouldRetry());
 
         if (shouldRetry()) {
             retryConnection();
@@ -401,6 +619,7 @@ public abstract class AwsIotConnection implements AwsIotConnectionCallback {
         connectionStatus = AWSIotConnectionStatus.DISCONNECTED;
 
         cancelRetry();
+        releaseWaitingMessages(false);
 
         if (connectCallback != null) {
             connectCallback.onFailure();
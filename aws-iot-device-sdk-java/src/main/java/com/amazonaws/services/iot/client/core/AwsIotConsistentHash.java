@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class implements a consistent hash ring that maps keys, e.g. topics,
+ * to a fixed set of nodes. Each node is placed on the ring at a number of
+ * virtual points, so keys are spread evenly, and a key maps to the node of
+ * the first point at or after its hash.
+ * <p>
+ * The ring is immutable, so lookups are lock-free: a binary search over a
+ * sorted array of points.
+ * </p>
+ *
+ * @param <T>
+ *            the type of the nodes
+ */
+public class AwsIotConsistentHash<T> {
+
+    private final int[] points;
+    private final Object[] nodes;
+
+    /**
+     * Instantiates a new hash ring.
+     *
+     * @param nodes
+     *            the nodes, which must not be empty
+     * @param virtualNodes
+     *            the number of points of each node on the ring
+     */
+    public AwsIotConsistentHash(List<? extends T> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("No nodes in the hash ring");
+        }
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Invalid number of virtual nodes: " + virtualNodes);
+        }
+
+        int size = nodes.size() * virtualNodes;
+        long[] entries = new long[size];
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                int point = hash(i + "#" + v);
+                // the point is in the upper half so the entries sort by it
+                entries[i * virtualNodes + v] = ((long) point << 32) | i;
+            }
+        }
+        Arrays.sort(entries);
+
+        this.points = new int[size];
+        this.nodes = new Object[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = (int) (entries[i] >> 32);
+            this.nodes[i] = nodes.get((int) entries[i]);
+        }
+    }
+
+    /**
+     * Gets the node the key maps to.
+     *
+     * @param key
+     *            the key
+     * @return the node
+     */
+    @SuppressWarnings("unchecked")
+    public T get(String key) {
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        if (index == points.length) {
+            index = 0;
+        }
+        return (T) nodes[index];
+    }
+
+    /**
+     * Hashes the key with FNV-1a, followed by the MurmurHash3 finalizer so
+     * similar keys, e.g. topics differing in the last character, are spread
+     * over the whole ring.
+     *
+     * @param key
+     *            the key
+     * @return the hash
+     */
+    static int hash(String key) {
+        int h = 0x811c9dc5;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x01000193;
+        }
+
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.core;
+
+import com.amazonaws.services.iot.client.AWSIotException;
+
+/**
+ * This exception class is used internally in the library to track publish
+ * requests rejected because the maximum number of in-flight messages has been
+ * reached. Unless publish backpressure is enabled, it's surfaced to the
+ * application as an {@link AWSIotException}.
+ */
+public class AwsIotInflightLimitException extends AWSIotException {
+
+    private static final long serialVersionUID = 1L;
+
+    public AwsIotInflightLimitException(Throwable e) {
+        super(e);
+    }
+
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.core;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.logging.Logger;
+
+import com.amazonaws.services.iot.client.AWSIotMessage;
+import com.amazonaws.services.iot.client.AWSIotOfflineQueuePolicy;
+import com.amazonaws.services.iot.client.AWSIotQos;
+
+/**
+ * This class implements a durable offline publish queue. Messages are
+ * appended to memory-mapped segment files in a local directory, and are
+ * recovered in order when the queue is reopened, e.g. after the process is
+ * restarted.
+ * <p>
+ * Each record in a segment consists of the body length, a state byte, and the
+ * body holding the QoS, topic and payload of the message. The length is
+ * written last, so a record that was only partially written is ignored on
+ * recovery. A record is marked as consumed when it's removed from the queue,
+ * and a segment file is deleted once all its records have been consumed.
+ * </p>
+ * <p>
+ * Records are written to the page cache through the mapping, so they survive
+ * the process being killed. Segments are only forced to the storage device
+ * when they're full, so the most recent messages may be lost if the device
+ * loses power.
+ * </p>
+ * <p>
+ * Only the message objects queued by the running process are kept on the
+ * heap so their callback functions can be invoked; the payload of the
+ * library's own requests is dropped from the heap while they're queued and
+ * read back from the segment when they're replayed.
+ * </p>
+ * <p>
+ * The queue is bounded by both the maximum offline queue size of the client
+ * and the maximum number of bytes. When it's full, new messages are rejected
+ * unless the overflow policy is
+ * {@link AWSIotOfflineQueuePolicy#DROP_OLDEST}; dropping by QoS and
+ * coalescing are only supported by {@link AwsIotMemoryOfflineQueue}, as they
+ * would leave holes in the segments.
+ * </p>
+ */
+public class AwsIotJournalPublishQueue implements AwsIotOfflineQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(AwsIotJournalPublishQueue.class.getName());
+
+    private static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "publish-queue-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int RECORD_HEADER_SIZE = 5;
+    private static final byte RECORD_VALID = 1;
+    private static final byte RECORD_CONSUMED = 2;
+
+    private final AbstractAwsIotClient client;
+    private final File directory;
+    private final long maxBytes;
+    private final AWSIotOfflineQueuePolicy overflowPolicy;
+    private final int segmentSize;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Deque<Record> records = new ArrayDeque<>();
+    private long liveBytes;
+    private long nextSegmentId;
+
+    /**
+     * Opens the queue stored in the directory, recovering the messages that
+     * haven't been consumed yet.
+     *
+     * @param client
+     *            the client whose maximum offline queue size bounds the queue
+     * @param directory
+     *            the directory of the segment files, which is created if it
+     *            doesn't exist
+     * @param maxBytes
+     *            the maximum number of bytes of the records in the queue
+     * @param overflowPolicy
+     *            the policy applied when the queue is full
+     * @throws IOException
+     *             this exception is thrown when the segment files can't be
+     *             read or created
+     */
+    public AwsIotJournalPublishQueue(AbstractAwsIotClient client, File directory, long maxBytes,
+            AWSIotOfflineQueuePolicy overflowPolicy) throws IOException {
+        this.client = client;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.overflowPolicy = overflowPolicy;
+        this.segmentSize = (int) Math.max(Math.min(maxBytes, DEFAULT_SEGMENT_SIZE), RECORD_HEADER_SIZE);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create offline queue directory " + directory);
+        }
+
+        recover();
+    }
+
+    @Override
+    public boolean offer(AWSIotMessage message) {
+        List<AWSIotMessage> dropped = new ArrayList<>();
+        boolean queued = append(message, dropped);
+
+        for (AWSIotMessage droppedMessage : dropped) {
+            droppedMessage.setErrorMessage("Message dropped from the offline queue");
+            droppedMessage.onFailure();
+        }
+        return queued;
+    }
+
+    private synchronized boolean append(AWSIotMessage message, List<AWSIotMessage> dropped) {
+        byte[] topic = message.getTopic().getBytes(StandardCharsets.UTF_8);
+        byte[] payload = message.getSharedPayload();
+        int bodyLength = 1 + 2 + topic.length + ((payload != null) ? payload.length : 0);
+        int recordLength = RECORD_HEADER_SIZE + bodyLength;
+
+        if (recordLength > segmentSize) {
+            return false;
+        }
+        while (records.size() >= client.getMaxOfflineQueueSize() || liveBytes + recordLength > maxBytes) {
+            if (overflowPolicy != AWSIotOfflineQueuePolicy.DROP_OLDEST || records.isEmpty()) {
+                return false;
+            }
+            dropped.add(poll());
+        }
+
+        Segment segment = segments.peekLast();
+        try {
+            if (segment == null || segment.writePosition + recordLength > segment.buffer.capacity()) {
+                if (segment != null) {
+                    segment.buffer.force();
+                    deleteIfConsumed(segment);
+                }
+                segment = createSegment();
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Failed to create offline queue segment: " + e.getMessage());
+            return false;
+        }
+
+        int position = segment.writePosition;
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(position + RECORD_HEADER_SIZE);
+        buffer.put((byte) message.getQos().getValue());
+        buffer.putShort((short) topic.length);
+        buffer.put(topic);
+        if (payload != null) {
+            buffer.put(payload);
+        }
+        segment.buffer.put(position + 4, RECORD_VALID);
+        segment.buffer.putInt(position, bodyLength);
+
+        segment.writePosition += recordLength;
+        segment.liveRecords++;
+        liveBytes += recordLength;
+
+        if (message instanceof AwsIotCompletion) {
+            // the payload is read back from the segment when it's replayed
+            message.setSharedPayload((byte[]) null);
+        }
+        records.add(new Record(segment, position, recordLength, message));
+        return true;
+    }
+
+    @Override
+    public synchronized AWSIotMessage peek() {
+        Record record = records.peekFirst();
+        return (record != null) ? load(record) : null;
+    }
+
+    @Override
+    public synchronized AWSIotMessage poll() {
+        Record record = records.pollFirst();
+        if (record == null) {
+            return null;
+        }
+
+        AWSIotMessage message = load(record);
+
+        Segment segment = record.segment;
+        segment.buffer.put(record.position + 4, RECORD_CONSUMED);
+        segment.liveRecords--;
+        liveBytes -= record.length;
+
+        if (segment != segments.peekLast()) {
+            deleteIfConsumed(segment);
+        }
+        return message;
+    }
+
+    @Override
+    public synchronized boolean remove(AWSIotMessage expected) {
+        Record record = records.peekFirst();
+        if (record == null || load(record) != expected) {
+            return false;
+        }
+
+        poll();
+        return true;
+    }
+
+    @Override
+    public synchronized int size() {
+        return records.size();
+    }
+
+    private AWSIotMessage load(Record record) {
+        if (record.loaded) {
+            return record.message;
+        }
+
+        ByteBuffer buffer = record.segment.buffer.duplicate();
+        buffer.position(record.position + RECORD_HEADER_SIZE);
+        AWSIotQos qos = AWSIotQos.valueOf(buffer.get());
+        byte[] topic = new byte[buffer.getShort() & 0xffff];
+        buffer.get(topic);
+        byte[] payload = new byte[record.length - RECORD_HEADER_SIZE - 3 - topic.length];
+        buffer.get(payload);
+
+        if (record.message == null) {
+            record.message = new AWSIotMessage(new String(topic, StandardCharsets.UTF_8), qos);
+        }
+        if (record.message.getSharedPayload() == null) {
+            record.message.setSharedPayload(payload);
+        }
+        record.loaded = true;
+        return record.message;
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (files == null) {
+            throw new IOException("Failed to list offline queue directory " + directory);
+        }
+        Arrays.sort(files);
+
+        for (File file : files) {
+            long id = getSegmentId(file);
+            if (id < 0) {
+                continue;
+            }
+            nextSegmentId = Math.max(nextSegmentId, id + 1);
+
+            Segment segment = new Segment(file, map(file, 0));
+            ByteBuffer buffer = segment.buffer;
+            int position = 0;
+            while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+                int bodyLength = buffer.getInt(position);
+                int recordLength = RECORD_HEADER_SIZE + bodyLength;
+                if (bodyLength <= 0 || position + recordLength > buffer.capacity()) {
+                    break;
+                }
+
+                if (buffer.get(position + 4) == RECORD_VALID) {
+                    records.add(new Record(segment, position, recordLength, null));
+                    segment.liveRecords++;
+                    liveBytes += recordLength;
+                }
+                position += recordLength;
+            }
+            segment.writePosition = position;
+
+            if (!deleteIfConsumed(segment)) {
+                segments.add(segment);
+            }
+        }
+
+        if (!records.isEmpty()) {
+            LOGGER.info("Recovered " + records.size() + " messages from offline queue " + directory);
+        }
+    }
+
+    private Segment createSegment() throws IOException {
+        File file = new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, nextSegmentId++, SEGMENT_SUFFIX));
+        Segment segment = new Segment(file, map(file, segmentSize));
+        segments.add(segment);
+        return segment;
+    }
+
+    private boolean deleteIfConsumed(Segment segment) {
+        if (segment.liveRecords > 0) {
+            return false;
+        }
+
+        segments.remove(segment);
+        if (!segment.file.delete()) {
+            LOGGER.warning("Failed to delete offline queue segment " + segment.file);
+        }
+        return true;
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            long length = (size > 0) ? size : channel.size();
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+    }
+
+    private static long getSegmentId(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * A memory-mapped segment file.
+     */
+    private static class Segment {
+
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int liveRecords;
+
+        private Segment(File file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+    }
+
+    /**
+     * A record of a queued message.
+     */
+    private static class Record {
+
+        private final Segment segment;
+        private final int position;
+        private final int length;
+        private AWSIotMessage message;
+        private boolean loaded;
+
+        private Record(Segment segment, int position, int length, AWSIotMessage message) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+            this.message = message;
+        }
+
+    }
+
+}
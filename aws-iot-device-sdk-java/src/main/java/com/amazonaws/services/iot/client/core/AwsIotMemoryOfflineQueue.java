@@ -0,0 +1,265 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.services.iot.client.AWSIotMessage;
+import com.amazonaws.services.iot.client.AWSIotOfflineQueuePolicy;
+import com.amazonaws.services.iot.client.AWSIotQos;
+
+/**
+ * This class implements an offline queue on the heap, bounded by the maximum
+ * offline queue size of the client. Its contents are lost when the process
+ * exits.
+ * <p>
+ * The bound is enforced under the queue lock, so concurrent callers can't
+ * exceed it, and the number of messages is kept in an atomic counter, so
+ * {@link #size()} doesn't need to traverse the queue. When the queue is full,
+ * the overflow policy decides which message is dropped. Messages dropped from
+ * the queue fail through their {@link AWSIotMessage#onFailure()} callback.
+ * </p>
+ * <p>
+ * With coalescing, only the latest message queued for each topic is kept; a
+ * new message replaces the queued message with the same topic and moves to
+ * the tail of the queue.
+ * </p>
+ * <p>
+ * With the {@link AWSIotOfflineQueuePolicy#DROP_LOWEST_QOS} policy, QoS 0
+ * messages are also chained in their own list, so the oldest of them can be
+ * found and removed in constant time.
+ * </p>
+ */
+public class AwsIotMemoryOfflineQueue implements AwsIotOfflineQueue {
+
+    private final AbstractAwsIotClient client;
+    private final AWSIotOfflineQueuePolicy overflowPolicy;
+    private final boolean coalescing;
+
+    private final AtomicInteger size = new AtomicInteger();
+    private final Map<String, Node> topics = new HashMap<>();
+    private Node head;
+    private Node tail;
+    private Node qos0Head;
+    private Node qos0Tail;
+
+    /**
+     * Instantiates a new offline queue that rejects new messages when it's
+     * full.
+     *
+     * @param client
+     *            the client whose maximum offline queue size bounds the queue
+     */
+    public AwsIotMemoryOfflineQueue(AbstractAwsIotClient client) {
+        this(client, AWSIotOfflineQueuePolicy.REJECT_NEW, false);
+    }
+
+    /**
+     * Instantiates a new offline queue.
+     *
+     * @param client
+     *            the client whose maximum offline queue size bounds the queue
+     * @param overflowPolicy
+     *            the policy applied when the queue is full
+     * @param coalescing
+     *            whether only the latest message for each topic is kept
+     */
+    public AwsIotMemoryOfflineQueue(AbstractAwsIotClient client, AWSIotOfflineQueuePolicy overflowPolicy,
+            boolean coalescing) {
+        this.client = client;
+        this.overflowPolicy = overflowPolicy;
+        this.coalescing = coalescing;
+    }
+
+    @Override
+    public boolean offer(AWSIotMessage message) {
+        AWSIotMessage dropped = null;
+
+        synchronized (this) {
+            Node replaced = coalescing ? topics.get(message.getTopic()) : null;
+            if (replaced != null) {
+                unlink(replaced);
+                dropped = replaced.message;
+            } else if (size.get() >= client.getMaxOfflineQueueSize()) {
+                Node victim = findVictim(message);
+                if (victim == null) {
+                    return false;
+                }
+                unlink(victim);
+                dropped = victim.message;
+            }
+
+            link(new Node(message));
+        }
+
+        if (dropped != null) {
+            dropped.setErrorMessage("Message dropped from the offline queue");
+            dropped.onFailure();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized AWSIotMessage peek() {
+        return (head != null) ? head.message : null;
+    }
+
+    @Override
+    public synchronized AWSIotMessage poll() {
+        Node node = head;
+        if (node == null) {
+            return null;
+        }
+
+        unlink(node);
+        return node.message;
+    }
+
+    @Override
+    public synchronized boolean remove(AWSIotMessage expected) {
+        if (head == null || head.message != expected) {
+            return false;
+        }
+
+        unlink(head);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    private Node findVictim(AWSIotMessage message) {
+        if (head == null) {
+            return null;
+        }
+
+        switch (overflowPolicy) {
+        case DROP_OLDEST:
+            return head;
+        case DROP_LOWEST_QOS:
+            if (qos0Head != null) {
+                return qos0Head;
+            }
+            // all the queued messages are QoS 1, so a QoS 0 message is the
+            // one with the lowest QoS
+            return isQos0(message) ? null : head;
+        default:
+            return null;
+        }
+    }
+
+    private void link(Node node) {
+        if (tail == null) {
+            head = tail = node;
+        } else {
+            tail.next = node;
+            node.prev = tail;
+            tail = node;
+        }
+
+        if (coalescing) {
+            topics.put(node.message.getTopic(), node);
+        }
+        if (isQos0Chained(node)) {
+            if (qos0Tail == null) {
+                qos0Head = qos0Tail = node;
+            } else {
+                qos0Tail.nextQos0 = node;
+                node.prevQos0 = qos0Tail;
+                qos0Tail = node;
+            }
+        }
+        size.incrementAndGet();
+    }
+
+    private void unlink(Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            tail = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+
+        if (coalescing) {
+            topics.remove(node.message.getTopic());
+        }
+        if (isQos0Chained(node)) {
+            if (node.prevQos0 != null) {
+                node.prevQos0.nextQos0 = node.nextQos0;
+            } else {
+                qos0Head = node.nextQos0;
+            }
+            if (node.nextQos0 != null) {
+                node.nextQos0.prevQos0 = node.prevQos0;
+            } else {
+                qos0Tail = node.prevQos0;
+            }
+            node.prevQos0 = null;
+            node.nextQos0 = null;
+        }
+        size.decrementAndGet();
+    }
+
+    /**
+     * Gets the number of messages in the QoS 0 list, for testing.
+     *
+     * @return the number of chained QoS 0 messages
+     */
+    synchronized int getQos0Size() {
+        int count = 0;
+        for (Node node = qos0Head; node != null; node = node.nextQos0) {
+            count++;
+        }
+        return count;
+    }
+
+    private boolean isQos0Chained(Node node) {
+        return overflowPolicy == AWSIotOfflineQueuePolicy.DROP_LOWEST_QOS && isQos0(node.message);
+    }
+
+    private static boolean isQos0(AWSIotMessage message) {
+        return message.getQos() == null || message.getQos() == AWSIotQos.QOS0;
+    }
+
+    /**
+     * A node of the doubly-linked list holding the queued messages in order,
+     * and of the list of QoS 0 messages.
+     */
+    private static class Node {
+
+        private final AWSIotMessage message;
+        private Node prev;
+        private Node next;
+        private Node prevQos0;
+        private Node nextQos0;
+
+        private Node(AWSIotMessage message) {
+            this.message = message;
+        }
+
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.iot.client.core;
+
+import com.amazonaws.services.iot.client.AWSIotMessage;
+
+/**
+ * This interface class defines the offline publish queue, which holds
+ * messages while the connection is being established. Messages are replayed
+ * in the order they were queued.
+ */
+public interface AwsIotOfflineQueue {
+
+    /**
+     * Adds the message to the tail of the queue.
+     *
+     * @param message
+     *            the message to be queued
+     * @return true if the message was queued, false if the queue is full
+     */
+    boolean offer(AWSIotMessage message);
+
+    /**
+     * Gets the message at the head of the queue without removing it.
+     *
+     * @return the message at the head of the queue, or null if the queue is
+     *         empty
+     */
+    AWSIotMessage peek();
+
+    /**
+     * Removes the message at the head of the queue.
+     *
+     * @return the message removed from the queue, or null if the queue is
+     *         empty
+     */
+    AWSIotMessage poll();
+
+    /**
+     * Removes the message at the head of the queue if it's the expected
+     * message. Messages are compared by identity, so a message that has been
+     * dropped or replaced since it was peeked isn't mistaken for the message
+     * that took its place.
+     *
+     * @param expected
+     *            the message expected at the head of the queue
+     * @return true if the message was removed, false if it's no longer at the
+     *         head of the queue
+     */
+    boolean remove(AWSIotMessage expected);
+
+    /**
+     * Gets the number of messages in the queue.
+     *
+     * @return the number of messages
+     */
+    int size();
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.core;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.amazonaws.services.iot.client.AWSIotConnectionStatus;
+import com.amazonaws.services.iot.client.AWSIotException;
+import com.amazonaws.services.iot.client.AWSIotMessage;
+
+/**
+ * This class replays the offline queues in the background after the
+ * connection is established, so a large backlog doesn't go out in a single
+ * burst that gets the client throttled and disconnected again.
+ * <p>
+ * Queued subscribe and unsubscribe requests are sent first, followed by the
+ * queued messages, in order. Each request is paced by the configured message
+ * and byte rates, and messages are held back while the number of in-flight
+ * messages has reached the replay window, leaving the rest of the in-flight
+ * slots to new messages. Requests are only removed from their queue once
+ * they've been sent, so the replay resumes where it stopped when the
+ * connection is lost and established again.
+ * </p>
+ */
+public class AwsIotOfflineReplay implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(AwsIotOfflineReplay.class.getName());
+
+    private final AbstractAwsIotClient client;
+    private final AwsIotConnection connection;
+
+    private volatile boolean running;
+    private boolean scheduled;
+    private boolean waitingForSlot;
+    private AWSIotMessage reservedMessage;
+    private AwsIotTokenBucket messageBucket;
+    private AwsIotTokenBucket byteBucket;
+
+    /**
+     * Instantiates a new replay of the connection's offline queues.
+     *
+     * @param client
+     *            the client whose settings pace the replay
+     * @param connection
+     *            the connection whose offline queues are replayed
+     */
+    public AwsIotOfflineReplay(AbstractAwsIotClient client, AwsIotConnection connection) {
+        this.client = client;
+        this.connection = connection;
+    }
+
+    /**
+     * Starts replaying the offline queues on the client thread pool, unless
+     * it's already in progress.
+     */
+    public synchronized void start() {
+        if (!running) {
+            messageBucket = (client.getOfflineReplayRate() > 0) ? new AwsIotTokenBucket(client.getOfflineReplayRate())
+                    : null;
+            byteBucket = (client.getOfflineReplayByteRate() > 0)
+                    ? new AwsIotTokenBucket(client.getOfflineReplayByteRate()) : null;
+            reservedMessage = null;
+            running = true;
+        }
+
+        waitingForSlot = false;
+        schedule(0);
+    }
+
+    /**
+     * Resumes the replay if it's been waiting for an in-flight slot. It's
+     * called when an in-flight message has been acknowledged.
+     */
+    public synchronized void resume() {
+        if (running && waitingForSlot) {
+            waitingForSlot = false;
+            schedule(0);
+        }
+    }
+
+    /**
+     * Checks whether the offline queues are being replayed.
+     *
+     * @return true if the replay is in progress
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public synchronized void run() {
+        scheduled = false;
+
+        while (running) {
+            if (connection.getConnectionStatus() != AWSIotConnectionStatus.CONNECTED) {
+                // resumed when the connection is established again
+                running = false;
+                return;
+            }
+
+            AwsIotOfflineQueue queue = connection.getSubscribeQueue();
+            if (queue.size() == 0) {
+                queue = connection.getUnsubscribeQueue();
+            }
+            if (queue.size() == 0) {
+                queue = connection.getPublishQueue();
+            }
+
+            AWSIotMessage message = queue.peek();
+            if (message == null) {
+                LOGGER.fine("Offline queues have been replayed");
+                running = false;
+                return;
+            }
+
+            if (message instanceof AwsIotCompletion && ((AwsIotCompletion) message).getFuture().isDone()) {
+                // the request has already timed out
+                queue.remove(message);
+                continue;
+            }
+
+            boolean isPublish = (queue == connection.getPublishQueue());
+            if (isPublish && client.getOfflineReplayWindow() > 0
+                    && connection.getInflightMessageCount() >= client.getOfflineReplayWindow()) {
+                waitingForSlot = true;
+                return;
+            }
+
+            if (message != reservedMessage) {
+                reservedMessage = message;
+                long delay = reserve(message);
+                if (delay > 0) {
+                    schedule(TimeUnit.NANOSECONDS.toMillis(delay) + 1);
+                    return;
+                }
+            }
+
+            try {
+                if (isPublish) {
+                    connection.publishMessage(message);
+                } else if (queue == connection.getSubscribeQueue()) {
+                    connection.subscribeTopic(message);
+                } else {
+                    connection.unsubscribeTopic(message);
+                }
+            } catch (AwsIotInflightLimitException e) {
+                waitingForSlot = true;
+                return;
+            } catch (AwsIotRetryableException e) {
+                running = false;
+                return;
+            } catch (AWSIotException e) {
+                LOGGER.info("Failed to send queued request for " + message.getTopic());
+                message.setErrorMessage(e.getMessage());
+                message.onFailure();
+            }
+
+            // the message may have been dropped or replaced while it was
+            // being sent, in which case the new head must stay queued
+            queue.remove(message);
+            reservedMessage = null;
+        }
+    }
+
+    private long reserve(AWSIotMessage message) {
+        long delay = 0;
+        if (messageBucket != null) {
+            delay = messageBucket.reserve(1);
+        }
+        if (byteBucket != null) {
+            delay = Math.max(delay, byteBucket.reserve(AwsIotPublishThrottle.getSize(message)));
+        }
+        return delay;
+    }
+
+    private void schedule(long delay) {
+        if (scheduled) {
+            return;
+        }
+
+        try {
+            client.scheduleTimeoutTask(this, delay);
+            scheduled = true;
+        } catch (AwsIotRuntimeException | RejectedExecutionException e) {
+            // the client is being shut down
+            running = false;
+        }
+    }
+
+}
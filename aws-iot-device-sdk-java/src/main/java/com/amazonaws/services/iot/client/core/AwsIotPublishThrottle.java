@@ -0,0 +1,289 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.core;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.amazonaws.services.iot.client.AWSIotException;
+import com.amazonaws.services.iot.client.AWSIotMessage;
+
+/**
+ * This class limits the rate of messages published on a connection, in
+ * messages and bytes per second, so bursts are smoothed out before they reach
+ * the per-connection limits enforced by the server.
+ * <p>
+ * A message is published right away if the rate allows it. Otherwise, it's
+ * held in a bounded queue and published, in order, on the client thread pool
+ * as soon as the rate allows it, or rejected if the queue is full. The time
+ * messages spend in the queue is counted, so applications can tell how much
+ * they're being slowed down.
+ * </p>
+ */
+public class AwsIotPublishThrottle implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(AwsIotPublishThrottle.class.getName());
+
+    private final AbstractAwsIotClient client;
+    private final AwsIotConnection connection;
+
+    private final Queue<ThrottledMessage> queue = new ArrayDeque<>();
+    private final AtomicLong throttledCount = new AtomicLong();
+    private final AtomicLong throttledTime = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private boolean initialized;
+    private AwsIotTokenBucket messageBucket;
+    private AwsIotTokenBucket byteBucket;
+    private boolean scheduled;
+    private boolean draining;
+
+    /**
+     * Instantiates a new throttle for the connection.
+     *
+     * @param client
+     *            the client whose settings configure the throttle
+     * @param connection
+     *            the connection the messages are published on
+     */
+    public AwsIotPublishThrottle(AbstractAwsIotClient client, AwsIotConnection connection) {
+        this.client = client;
+        this.connection = connection;
+    }
+
+    /**
+     * Checks whether the message can be published right away. If it can't,
+     * the message is queued and published later by the throttle.
+     *
+     * @param message
+     *            the message to be published
+     * @return true if the message should be published by the caller, false if
+     *         it's been queued
+     * @throws AWSIotException
+     *             this exception is thrown when the message exceeds the rate
+     *             and the throttle queue is full
+     */
+    public synchronized boolean admit(AWSIotMessage message) throws AWSIotException {
+        if (!initialized) {
+            // the rates can't change once the client is connected
+            messageBucket = (client.getPublishRate() > 0) ? new AwsIotTokenBucket(client.getPublishRate()) : null;
+            byteBucket = (client.getPublishByteRate() > 0) ? new AwsIotTokenBucket(client.getPublishByteRate())
+                    : null;
+            initialized = true;
+        }
+        if (messageBucket == null && byteBucket == null) {
+            return true;
+        }
+
+        long delay = 0;
+        if (queue.isEmpty() && !draining) {
+            delay = tryAcquire(message);
+            if (delay == 0) {
+                return true;
+            }
+        }
+
+        if (queue.size() >= client.getPublishThrottleQueueSize()) {
+            rejectedCount.incrementAndGet();
+            throw new AWSIotException("Publish rate limit exceeded");
+        }
+
+        queue.add(new ThrottledMessage(message, System.nanoTime()));
+        throttledCount.incrementAndGet();
+        if (!draining) {
+            schedule(delay);
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of messages that have been held back because they
+     * exceeded the rate.
+     *
+     * @return the number of throttled messages
+     */
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * Gets the total time throttled messages have spent in the queue.
+     *
+     * @return the throttled time in milliseconds
+     */
+    public long getThrottledTime() {
+        return TimeUnit.NANOSECONDS.toMillis(throttledTime.get());
+    }
+
+    /**
+     * Gets the number of messages that have been rejected because they
+     * exceeded the rate and the throttle queue was full.
+     *
+     * @return the number of rejected messages
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Gets the number of bytes a message counts for against the byte rate,
+     * namely the length of its UTF-8 encoded topic and payload.
+     *
+     * @param message
+     *            the message
+     * @return the size of the message
+     */
+    static long getSize(AWSIotMessage message) {
+        byte[] payload = message.getSharedPayload();
+        return getEncodedLength(message.getTopic()) + ((payload != null) ? payload.length : 0);
+    }
+
+    /**
+     * Gets the length of a string encoded in UTF-8, without encoding it.
+     * Unpaired surrogates count for one byte, as they're encoded as '?'.
+     *
+     * @param str
+     *            the string
+     * @return the number of bytes in UTF-8
+     */
+    static int getEncodedLength(String str) {
+        int length = 0;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < str.length()
+                    && Character.isLowSurrogate(str.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            AWSIotMessage message;
+
+            synchronized (this) {
+                scheduled = false;
+                draining = false;
+
+                ThrottledMessage throttled = queue.peek();
+                if (throttled == null) {
+                    return;
+                }
+
+                if (throttled.message instanceof AwsIotCompletion
+                        && ((AwsIotCompletion) throttled.message).getFuture().isDone()) {
+                    // the request has already timed out
+                    queue.poll();
+                    continue;
+                }
+
+                long delay = tryAcquire(throttled.message);
+                if (delay > 0) {
+                    schedule(delay);
+                    return;
+                }
+
+                queue.poll();
+                throttledTime.addAndGet(System.nanoTime() - throttled.queuedTime);
+                message = throttled.message;
+
+                // messages published meanwhile are queued behind this one
+                draining = true;
+            }
+
+            try {
+                connection.publishAdmitted(message);
+            } catch (AWSIotException e) {
+                LOGGER.info("Failed to publish throttled message to " + message.getTopic());
+                message.setErrorMessage(e.getMessage());
+                message.onFailure();
+            }
+        }
+    }
+
+    private long tryAcquire(AWSIotMessage message) {
+        long size = getSize(message);
+
+        long delay = 0;
+        if (messageBucket != null) {
+            delay = messageBucket.getDelay(1);
+        }
+        if (byteBucket != null) {
+            delay = Math.max(delay, byteBucket.getDelay(size));
+        }
+        if (delay > 0) {
+            return delay;
+        }
+
+        if (messageBucket != null) {
+            messageBucket.take(1);
+        }
+        if (byteBucket != null) {
+            byteBucket.take(size);
+        }
+        return 0;
+    }
+
+    private void schedule(long delay) {
+        if (scheduled) {
+            return;
+        }
+
+        try {
+            client.scheduleTimeoutTask(this, TimeUnit.NANOSECONDS.toMillis(delay) + 1);
+            scheduled = true;
+        } catch (AwsIotRuntimeException | RejectedExecutionException e) {
+            // the client is being shut down, so the queued messages are
+            // failed rather than left waiting
+            ThrottledMessage throttled;
+            while ((throttled = queue.poll()) != null) {
+                throttled.message.setErrorMessage("Client is not connected");
+                throttled.message.onFailure();
+            }
+        }
+    }
+
+    /**
+     * A message held back by the throttle.
+     */
+    private static class ThrottledMessage {
+
+        private final AWSIotMessage message;
+        private final long queuedTime;
+
+        private ThrottledMessage(AWSIotMessage message, long queuedTime) {
+            this.message = message;
+            this.queuedTime = queuedTime;
+        }
+
+    }
+
+}
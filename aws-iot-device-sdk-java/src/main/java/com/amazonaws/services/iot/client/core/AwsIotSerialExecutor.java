@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.core;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class runs tasks submitted with the same key one at a time, in the
+ * order they were submitted, while tasks of different keys run in parallel on
+ * the underlying executor.
+ * <p>
+ * Each key with pending tasks has its own queue, and at most one task of the
+ * queue is running on the underlying executor at any time. A queue drains a
+ * limited number of tasks per run before giving the thread back, so a busy key
+ * can't hold on to a thread of the pool. Queues are removed once they're
+ * empty, so keys cost nothing while they're idle.
+ * </p>
+ */
+public class AwsIotSerialExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(AwsIotSerialExecutor.class.getName());
+
+    private static final int MAX_TASKS_PER_RUN = 64;
+
+    private final Executor executor;
+    private final ConcurrentMap<Object, SerialQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Instantiates a new serial executor.
+     *
+     * @param executor
+     *            the executor the tasks are run on
+     */
+    public AwsIotSerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Runs the task after all the tasks previously submitted with the same
+     * key have run.
+     *
+     * @param key
+     *            the key the task is ordered by
+     * @param task
+     *            the task
+     */
+    public void execute(Object key, Runnable task) {
+        while (true) {
+            SerialQueue queue = queues.get(key);
+            if (queue == null) {
+                queue = new SerialQueue(key);
+                SerialQueue existing = queues.putIfAbsent(key, queue);
+                if (existing != null) {
+                    queue = existing;
+                }
+            }
+
+            if (queue.add(task)) {
+                return;
+            }
+            // the queue has just been removed, so a new one is created
+        }
+    }
+
+    /**
+     * The pending tasks of a key.
+     */
+    private class SerialQueue implements Runnable {
+
+        private final Object key;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean running;
+        private boolean removed;
+
+        private SerialQueue(Object key) {
+            this.key = key;
+        }
+
+        private boolean add(Runnable task) {
+            synchronized (this) {
+                if (removed) {
+                    return false;
+                }
+
+                tasks.add(task);
+                if (running) {
+                    return true;
+                }
+                running = true;
+            }
+
+            schedule();
+            return true;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < MAX_TASKS_PER_RUN; i++) {
+                Runnable task;
+                synchronized (this) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        running = false;
+                        removed = true;
+                        queues.remove(key, this);
+                        return;
+                    }
+                }
+
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Task failed", e);
+                }
+            }
+
+            // more tasks are pending, let other keys run first
+            schedule();
+        }
+
+        private void schedule() {
+            try {
+                executor.execute(this);
+            } catch (RuntimeException e) {
+                // the executor is shut down, so the pending tasks can't run
+                synchronized (this) {
+                    tasks.clear();
+                    running = false;
+                    removed = true;
+                    queues.remove(key, this);
+                }
+                throw e;
+            }
+        }
+
+    }
+
+}
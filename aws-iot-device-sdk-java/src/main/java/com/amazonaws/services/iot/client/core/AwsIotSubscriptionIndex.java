@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class indexes the subscribed topic filters for routing inbound
+ * messages. Filters without wildcards, such as the shadow topics, are kept in
+ * a hash map so they can be found with a single lookup; only filters with
+ * wildcards are indexed in a {@link AwsIotTopicTrie}, which is skipped
+ * entirely when there are none.
+ * <p>
+ * The index also counts how often each routing path was taken.
+ * </p>
+ *
+ * @param <T>
+ *            the type of the values associated with the topic filters
+ */
+public class AwsIotSubscriptionIndex<T> {
+
+    private final ConcurrentMap<String, ConcurrentMap<String, T>> exactFilters = new ConcurrentHashMap<>();
+    private final AwsIotTopicTrie<T> wildcardFilters = new AwsIotTopicTrie<>();
+    private final AtomicInteger wildcardFilterCount = new AtomicInteger();
+
+    private final AtomicLong exactMatchCount = new AtomicLong();
+    private final AtomicLong wildcardMatchCount = new AtomicLong();
+    private final AtomicLong unmatchedCount = new AtomicLong();
+
+    /**
+     * Associates the value with the topic filter, replacing any value
+     * previously associated with the same filter.
+     *
+     * @param topicFilter
+     *            the topic filter
+     * @param value
+     *            the value to be associated with the topic filter
+     */
+    public synchronized void put(AwsIotTopicFilter topicFilter, T value) {
+        if (!topicFilter.isValid()) {
+            return;
+        }
+
+        if (topicFilter.isWildcard()) {
+            if (wildcardFilters.remove(topicFilter) == null) {
+                wildcardFilterCount.incrementAndGet();
+            }
+            wildcardFilters.put(topicFilter, value);
+            return;
+        }
+
+        String key = AwsIotTopicFilter.normalize(topicFilter.getFilter());
+        ConcurrentMap<String, T> filters = exactFilters.get(key);
+        if (filters == null) {
+            filters = new ConcurrentHashMap<>();
+            exactFilters.put(key, filters);
+        }
+        filters.put(topicFilter.getFilter(), value);
+    }
+
+    /**
+     * Removes the value associated with the topic filter.
+     *
+     * @param topicFilter
+     *            the topic filter
+     * @return the value previously associated with the topic filter, or null
+     *         if there was none
+     */
+    public synchronized T remove(AwsIotTopicFilter topicFilter) {
+        if (!topicFilter.isValid()) {
+            return null;
+        }
+
+        if (topicFilter.isWildcard()) {
+            T value = wildcardFilters.remove(topicFilter);
+            if (value != null) {
+                wildcardFilterCount.decrementAndGet();
+            }
+            return value;
+        }
+
+        String key = AwsIotTopicFilter.normalize(topicFilter.getFilter());
+        ConcurrentMap<String, T> filters = exactFilters.get(key);
+        if (filters == null) {
+            return null;
+        }
+
+        T value = filters.remove(topicFilter.getFilter());
+        if (filters.isEmpty()) {
+            exactFilters.remove(key);
+        }
+        return value;
+    }
+
+    /**
+     * Removes all the topic filters from the index.
+     */
+    public synchronized void clear() {
+        exactFilters.clear();
+        wildcardFilters.clear();
+        wildcardFilterCount.set(0);
+    }
+
+    /**
+     * Finds the values of all the topic filters matching the topic.
+     *
+     * @param topic
+     *            the topic to be matched
+     * @return the list of values whose topic filters match the topic
+     */
+    public List<T> match(String topic) {
+        if (topic == null) {
+            return new ArrayList<>();
+        }
+
+        List<T> matches;
+        if (wildcardFilterCount.get() > 0) {
+            matches = wildcardFilters.match(topic);
+            if (!matches.isEmpty()) {
+                wildcardMatchCount.incrementAndGet();
+            }
+        } else {
+            matches = new ArrayList<>();
+        }
+
+        ConcurrentMap<String, T> filters = exactFilters.get(AwsIotTopicFilter.normalize(topic));
+        if (filters != null) {
+            matches.addAll(filters.values());
+            exactMatchCount.incrementAndGet();
+        }
+
+        if (matches.isEmpty()) {
+            unmatchedCount.incrementAndGet();
+        }
+        return matches;
+    }
+
+    /**
+     * Gets the number of messages that were routed to at least one filter
+     * without wildcards through the hash lookup.
+     *
+     * @return the number of exact matches
+     */
+    public long getExactMatchCount() {
+        return exactMatchCount.get();
+    }
+
+    /**
+     * Gets the number of messages that were routed to at least one filter
+     * with wildcards through the topic trie.
+     *
+     * @return the number of wildcard matches
+     */
+    public long getWildcardMatchCount() {
+        return wildcardMatchCount.get();
+    }
+
+    /**
+     * Gets the number of messages that didn't match any filter.
+     *
+     * @return the number of unmatched messages
+     */
+    public long getUnmatchedCount() {
+        return unmatchedCount.get();
+    }
+
+}
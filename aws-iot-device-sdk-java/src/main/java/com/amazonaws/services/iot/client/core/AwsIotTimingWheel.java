@@ -0,0 +1,419 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements a hashed timing wheel for the request timeouts. Each
+ * timeout is placed in the bucket of the tick it expires on, so scheduling
+ * and cancelling are O(1) regardless of how many requests are in flight.
+ * Timeouts are only checked once per tick, so they may fire up to one tick
+ * late.
+ * <p>
+ * Cancelling is lock-free, and scheduling only holds the wheel lock to
+ * register the timeout; new and cancelled timeouts are queued and applied to
+ * the buckets by the tick task, which runs periodically on the scheduler.
+ * Expired tasks are handed over to the executor. The tick task only runs
+ * while there are pending timeouts, so an idle wheel costs nothing, which
+ * matters when many clients share one scheduler.
+ * </p>
+ */
+public class AwsIotTimingWheel {
+
+    private static final Logger LOGGER = Logger.getLogger(AwsIotTimingWheel.class.getName());
+
+    private final long tickDuration;
+    private final Bucket[] wheel;
+    private final int mask;
+
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private ScheduledExecutorService scheduler;
+    private Executor executor;
+    private Future<?> tickTask;
+    private volatile boolean started;
+    private volatile long startTime;
+    private long tick;
+
+    /**
+     * Instantiates a new timing wheel.
+     *
+     * @param tickDuration
+     *            the duration of one tick in milliseconds, which is also the
+     *            precision of the timeouts
+     * @param wheelSize
+     *            the number of buckets in the wheel, which is rounded up to a
+     *            power of two. Timeouts longer than one revolution of the
+     *            wheel are kept in their bucket for more rounds.
+     */
+    public AwsIotTimingWheel(long tickDuration, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Invalid tick duration: " + tickDuration);
+        }
+        if (wheelSize <= 0) {
+            throw new IllegalArgumentException("Invalid wheel size: " + wheelSize);
+        }
+
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+
+        this.tickDuration = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+        this.wheel = new Bucket[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Starts the wheel. It ticks on the scheduler whenever there are pending
+     * timeouts.
+     *
+     * @param scheduler
+     *            the scheduler that drives the wheel
+     * @param executor
+     *            the executor that executes the expired tasks
+     */
+    public synchronized void start(ScheduledExecutorService scheduler, Executor executor) {
+        if (started) {
+            return;
+        }
+
+        this.scheduler = scheduler;
+        this.executor = executor;
+        this.startTime = System.nanoTime();
+        this.tick = 0;
+        // nothing scheduled before the wheel was stopped is left pending
+        newTimeouts.clear();
+        cancelledTimeouts.clear();
+        pendingCount.set(0);
+        this.started = true;
+    }
+
+    /**
+     * Checks whether the wheel has been started and not stopped since.
+     *
+     * @return true if the wheel is started
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Stops ticking. Timeouts that haven't expired or been cancelled are
+     * returned so they can be handed over to another scheduler.
+     *
+     * @return the list of pending timeouts
+     */
+    public synchronized List<Timeout> stop() {
+        List<Timeout> pending = new ArrayList<>();
+        if (!started) {
+            return pending;
+        }
+
+        started = false;
+        if (tickTask != null) {
+            tickTask.cancel(false);
+            tickTask = null;
+        }
+
+        transferNewTimeouts();
+        for (Bucket bucket : wheel) {
+            bucket.drainTo(pending);
+        }
+        cancelledTimeouts.clear();
+        pendingCount.set(0);
+        return pending;
+    }
+
+    /**
+     * Schedules the task to be executed on the client thread pool after the
+     * delay.
+     *
+     * @param task
+     *            the task to be executed
+     * @param delay
+     *            the delay in milliseconds
+     * @return the timeout object that can be used to cancel the task
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        Timeout timeout;
+
+        // registered under the lock, so the wheel can't be stopped between
+        // the check and the timeout being counted as pending
+        synchronized (this) {
+            if (!started) {
+                throw new AwsIotRuntimeException("Client is not connected");
+            }
+
+            long deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(delay);
+            timeout = new Timeout(this, task, deadline);
+            newTimeouts.add(timeout);
+            if (pendingCount.getAndIncrement() == 0) {
+                startTicking();
+            }
+        }
+
+        return timeout;
+    }
+
+    private synchronized void startTicking() {
+        if (!started || tickTask != null) {
+            return;
+        }
+
+        // the wheel has been idle, so there are no pending timeouts in the
+        // buckets between the last tick and the current one
+        tick = Math.max(tick, (System.nanoTime() - startTime) / tickDuration);
+
+        long period = TimeUnit.NANOSECONDS.toMillis(tickDuration);
+        tickTask = scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                onTick();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void onTick() {
+        if (!started) {
+            return;
+        }
+
+        long elapsed = System.nanoTime() - startTime;
+        while ((tick + 1) * tickDuration <= elapsed) {
+            removeCancelledTimeouts();
+            transferNewTimeouts();
+            wheel[(int) (tick & mask)].expireTimeouts((tick + 1) * tickDuration);
+            tick++;
+        }
+
+        if (pendingCount.get() == 0 && tickTask != null) {
+            // restarted by the next timeout scheduled
+            tickTask.cancel(false);
+            tickTask = null;
+        }
+    }
+
+    private void transferNewTimeouts() {
+        Timeout timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (timeout.state != Timeout.PENDING) {
+                continue;
+            }
+
+            long expiryTick = Math.max(timeout.deadline / tickDuration, tick);
+            timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+            wheel[(int) (expiryTick & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelledTimeouts() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void expire(Timeout timeout) {
+        if (timeout.compareAndSetState(Timeout.PENDING, Timeout.EXPIRED)) {
+            pendingCount.decrementAndGet();
+            try {
+                executor.execute(timeout.task);
+            } catch (RejectedExecutionException e) {
+                // the thread pool has been shut down with the connection; an
+                // exception here would also cancel the tick task for good
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException re) {
+                    LOGGER.log(Level.WARNING, "Timeout task failed", re);
+                }
+            }
+        }
+    }
+
+    /**
+     * A task scheduled in the timing wheel.
+     */
+    public static class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater
+                .newUpdater(Timeout.class, "state");
+
+        private final AwsIotTimingWheel timingWheel;
+        private final Runnable task;
+        private final long deadline;
+
+        private volatile int state = PENDING;
+
+        // the following fields are only accessed by the tick task
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(AwsIotTimingWheel timingWheel, Runnable task, long deadline) {
+            this.timingWheel = timingWheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task if it hasn't been executed yet.
+         *
+         * @return true if the task was cancelled, false if it had already
+         *         expired or been cancelled
+         */
+        public boolean cancel() {
+            if (!compareAndSetState(PENDING, CANCELLED)) {
+                return false;
+            }
+
+            timingWheel.pendingCount.decrementAndGet();
+            timingWheel.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        /**
+         * Checks whether the task has been cancelled.
+         *
+         * @return true if the task was cancelled, false otherwise
+         */
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        /**
+         * Gets the time left before the task expires.
+         *
+         * @return the remaining delay in milliseconds, which is 0 or less if
+         *         the deadline has passed
+         */
+        public long getRemainingDelay() {
+            long elapsed = System.nanoTime() - timingWheel.startTime;
+            return TimeUnit.NANOSECONDS.toMillis(deadline - elapsed);
+        }
+
+        /**
+         * Gets the task to be executed.
+         *
+         * @return the task
+         */
+        public Runnable getTask() {
+            return task;
+        }
+
+        private boolean compareAndSetState(int expect, int update) {
+            return STATE.compareAndSet(this, expect, update);
+        }
+
+    }
+
+    /**
+     * A doubly-linked list of the timeouts expiring on the same tick of the
+     * wheel, possibly in different rounds.
+     */
+    private class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+
+        private void expireTimeouts(long tickDeadline) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                if (timeout.state != Timeout.PENDING) {
+                    timeout = remove(timeout);
+                } else if (timeout.remainingRounds <= 0 && timeout.deadline <= tickDeadline) {
+                    Timeout next = remove(timeout);
+                    expire(timeout);
+                    timeout = next;
+                } else {
+                    timeout.remainingRounds--;
+                    timeout = timeout.next;
+                }
+            }
+        }
+
+        private void drainTo(List<Timeout> pending) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = remove(timeout);
+                // handed over, so no longer counted as pending in the wheel
+                if (timeout.compareAndSetState(Timeout.PENDING, Timeout.EXPIRED)) {
+                    pending.add(timeout);
+                }
+                timeout = next;
+            }
+        }
+
+    }
+
+}
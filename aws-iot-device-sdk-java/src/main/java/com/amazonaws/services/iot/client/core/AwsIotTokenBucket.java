@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class implements a token bucket for rate limiting. Tokens are added at
+ * a constant rate, up to one second's worth, and each request takes the
+ * number of tokens it needs.
+ * <p>
+ * Tokens can either be reserved, in which case the request is always granted
+ * and the bucket may go into debt, e.g. for a message larger than the byte
+ * rate, with the caller told how long to wait before acting on it; or taken
+ * once {@link #getDelay(long)} reports that enough of them are available.
+ * Either way, large requests are paced rather than rejected.
+ * </p>
+ */
+public class AwsIotTokenBucket {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double ratePerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long lastRefillTime;
+
+    /**
+     * Instantiates a new token bucket, initially full.
+     *
+     * @param ratePerSecond
+     *            the number of tokens added every second
+     */
+    public AwsIotTokenBucket(long ratePerSecond) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid rate: " + ratePerSecond);
+        }
+
+        this.ratePerNano = (double) ratePerSecond / NANOS_PER_SECOND;
+        this.capacity = ratePerSecond;
+        this.tokens = capacity;
+        this.lastRefillTime = System.nanoTime();
+    }
+
+    /**
+     * Takes the tokens from the bucket.
+     *
+     * @param permits
+     *            the number of tokens needed
+     * @return the time in nanoseconds to wait before acting on the request,
+     *         which is 0 if there were enough tokens
+     */
+    public synchronized long reserve(long permits) {
+        refill();
+
+        long delay = (tokens >= 0) ? 0 : (long) Math.ceil(-tokens / ratePerNano);
+        tokens -= permits;
+        return delay;
+    }
+
+    /**
+     * Gets the time until the bucket holds enough tokens for the request,
+     * without taking them. Requests larger than the bucket can be granted
+     * once it's full.
+     *
+     * @param permits
+     *            the number of tokens needed
+     * @return the time in nanoseconds to wait, which is 0 if there are enough
+     *         tokens
+     */
+    public synchronized long getDelay(long permits) {
+        refill();
+
+        double needed = Math.min(permits, capacity);
+        return (tokens >= needed) ? 0 : (long) Math.ceil((needed - tokens) / ratePerNano);
+    }
+
+    /**
+     * Takes the tokens from the bucket, regardless of how many it holds.
+     *
+     * @param permits
+     *            the number of tokens taken
+     */
+    public synchronized void take(long permits) {
+        refill();
+
+        tokens -= permits;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillTime) * ratePerNano);
+        lastRefillTime = now;
+    }
+
+}
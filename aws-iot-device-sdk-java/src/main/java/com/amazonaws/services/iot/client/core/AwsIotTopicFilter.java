@@ -0,0 +1,222 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.core;
+
+import lombok.Getter;
+
+/**
+ * This class represents a topic filter that is tokenized once, typically when
+ * a topic is subscribed to. Incoming topics are matched against it by scanning
+ * their characters in place, so no objects are allocated per match.
+ * <p>
+ * Topic filters and topics are split into levels with the same rules as
+ * {@link String#split(String)} on "/", which is what the library has always
+ * used. That is, trailing empty levels are ignored, and a multi-level wildcard
+ * ({@code #}) must be the last level of the filter and must match at least one
+ * level of the topic.
+ * </p>
+ */
+public class AwsIotTopicFilter {
+
+    static final char LEVEL_SEPARATOR = '/';
+    static final String SINGLE_LEVEL_WILDCARD = "+";
+    static final String MULTI_LEVEL_WILDCARD = "#";
+
+    /**
+     * The original topic filter string.
+     *
+     * @return the topic filter string
+     */
+    @Getter
+    private final String filter;
+
+    /**
+     * Whether the topic filter contains any wildcard level.
+     *
+     * @return true if the filter contains a wildcard level, false otherwise
+     */
+    @Getter
+    private final boolean wildcard;
+
+    /**
+     * Whether the topic filter can match any topic at all. A filter with a
+     * multi-level wildcard that is not the last level never matches.
+     *
+     * @return true if the filter is valid, false otherwise
+     */
+    @Getter
+    private final boolean valid;
+
+    private final String[] levels;
+    private final boolean multiLevel;
+
+    /**
+     * Instantiates a new topic filter.
+     *
+     * @param filter
+     *            the topic filter string
+     */
+    public AwsIotTopicFilter(String filter) {
+        this.filter = filter;
+        this.levels = filter.split(String.valueOf(LEVEL_SEPARATOR));
+
+        boolean wildcard = false;
+        boolean valid = true;
+        for (int i = 0; i < levels.length; i++) {
+            if (MULTI_LEVEL_WILDCARD.equals(levels[i])) {
+                wildcard = true;
+                valid &= (i == levels.length - 1);
+            } else if (SINGLE_LEVEL_WILDCARD.equals(levels[i])) {
+                wildcard = true;
+            }
+        }
+
+        this.wildcard = wildcard;
+        this.valid = valid;
+        this.multiLevel = valid && levels.length > 0 && MULTI_LEVEL_WILDCARD.equals(levels[levels.length - 1]);
+    }
+
+    /**
+     * Checks whether the topic matches this filter.
+     *
+     * @param topic
+     *            the topic to be matched
+     * @return true if the topic matches the filter, false otherwise
+     */
+    public boolean matches(String topic) {
+        if (topic == null || !valid) {
+            return false;
+        }
+
+        int end = getLevelsEnd(topic);
+        int start = (end < 0) ? -1 : 0;
+
+        for (int i = 0; i < levels.length; i++) {
+            if (start < 0) {
+                // the topic has fewer levels than the filter
+                return false;
+            }
+
+            if (multiLevel && i == levels.length - 1) {
+                return true;
+            }
+
+            int levelEnd = getLevelEnd(topic, start, end);
+            if (!SINGLE_LEVEL_WILDCARD.equals(levels[i])) {
+                int length = levelEnd - start;
+                if (levels[i].length() != length || !topic.regionMatches(start, levels[i], 0, length)) {
+                    return false;
+                }
+            }
+
+            start = getNextLevel(levelEnd, end);
+        }
+
+        return start < 0;
+    }
+
+    /**
+     * Gets the number of levels in the filter.
+     *
+     * @return the number of levels
+     */
+    int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * Gets the filter level at the given index.
+     *
+     * @param index
+     *            the index of the level
+     * @return the level
+     */
+    String getLevel(int index) {
+        return levels[index];
+    }
+
+    /**
+     * Gets the end of the topic levels, with trailing empty levels excluded
+     * in the same way as {@link String#split(String)}.
+     *
+     * @param topic
+     *            the topic
+     * @return the end index of the last level, or -1 if the topic has no
+     *         levels at all, e.g. "/"
+     */
+    static int getLevelsEnd(String topic) {
+        if (topic.indexOf(LEVEL_SEPARATOR) < 0) {
+            return topic.length();
+        }
+
+        int end = topic.length();
+        while (end > 0 && topic.charAt(end - 1) == LEVEL_SEPARATOR) {
+            end--;
+        }
+        return (end == 0) ? -1 : end;
+    }
+
+    /**
+     * Gets the normalized form of a topic or a topic filter, which is the
+     * same for all the strings that are split into the same levels. It's
+     * used as the key for looking up filters without wildcards. For most
+     * topics, the topic itself is returned.
+     *
+     * @param topic
+     *            the topic or topic filter
+     * @return the normalized topic
+     */
+    static String normalize(String topic) {
+        int end = getLevelsEnd(topic);
+        if (end < 0) {
+            return String.valueOf(LEVEL_SEPARATOR);
+        }
+        return topic.substring(0, end);
+    }
+
+    /**
+     * Gets the end index of the topic level starting at {@code start}.
+     *
+     * @param topic
+     *            the topic
+     * @param start
+     *            the start index of the level
+     * @param end
+     *            the end of the topic levels returned by
+     *            {@link #getLevelsEnd(String)}
+     * @return the end index of the level
+     */
+    static int getLevelEnd(String topic, int start, int end) {
+        int levelEnd = topic.indexOf(LEVEL_SEPARATOR, start);
+        return (levelEnd < 0 || levelEnd > end) ? end : levelEnd;
+    }
+
+    /**
+     * Gets the start index of the topic level following the one ending at
+     * {@code levelEnd}.
+     *
+     * @param levelEnd
+     *            the end index of the current level
+     * @param end
+     *            the end of the topic levels returned by
+     *            {@link #getLevelsEnd(String)}
+     * @return the start index of the next level, or -1 if there is none
+     */
+    static int getNextLevel(int levelEnd, int end) {
+        return (levelEnd >= end) ? -1 : levelEnd + 1;
+    }
+
+}
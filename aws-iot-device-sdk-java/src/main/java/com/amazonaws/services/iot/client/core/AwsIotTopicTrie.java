@@ -0,0 +1,303 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class implements a concurrent topic trie that indexes topic filters
+ * level by level. Single-level ({@code +}) and multi-level ({@code #})
+ * wildcards are kept in dedicated branches of each node, so matching a topic
+ * against all the subscriptions costs O(topic depth) instead of O(number of
+ * subscriptions).
+ * <p>
+ * Topic filters and topics are split into levels with the rules described in
+ * {@link AwsIotTopicFilter}. Topics are matched by scanning their characters
+ * in place, without splitting them into level strings. Lookups are lock-free;
+ * updates are serialized on the trie and replace the affected child tables.
+ * </p>
+ *
+ * @param <T>
+ *            the type of the values associated with the topic filters
+ */
+public class AwsIotTopicTrie<T> {
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * Associates the value with the topic filter, replacing any value
+     * previously associated with the same filter.
+     *
+     * @param topicFilter
+     *            the topic filter
+     * @param value
+     *            the value to be associated with the topic filter
+     */
+    public synchronized void put(AwsIotTopicFilter topicFilter, T value) {
+        if (!topicFilter.isValid()) {
+            // filters with '#' not at the last level never match any topic
+            return;
+        }
+
+        Node<T> node = root;
+        for (int i = 0; i < topicFilter.getLevelCount(); i++) {
+            node = node.getOrCreateChild(topicFilter.getLevel(i));
+        }
+        node.values.put(topicFilter.getFilter(), value);
+    }
+
+    /**
+     * Removes the value associated with the topic filter.
+     *
+     * @param topicFilter
+     *            the topic filter
+     * @return the value previously associated with the topic filter, or null
+     *         if there was none
+     */
+    public synchronized T remove(AwsIotTopicFilter topicFilter) {
+        if (!topicFilter.isValid()) {
+            return null;
+        }
+
+        return remove(root, topicFilter, 0);
+    }
+
+    /**
+     * Removes all the topic filters from the trie.
+     */
+    public synchronized void clear() {
+        root.values.clear();
+        root.children = LevelTable.empty();
+        root.singleLevel = null;
+        root.multiLevel = null;
+    }
+
+    /**
+     * Finds the values of all the topic filters matching the topic.
+     *
+     * @param topic
+     *            the topic to be matched
+     * @return the list of values whose topic filters match the topic
+     */
+    public List<T> match(String topic) {
+        List<T> matches = new ArrayList<>();
+        if (topic == null) {
+            return matches;
+        }
+
+        int end = AwsIotTopicFilter.getLevelsEnd(topic);
+        match(root, topic, (end < 0) ? -1 : 0, end, matches);
+        return matches;
+    }
+
+    private void match(Node<T> node, String topic, int start, int end, List<T> matches) {
+        if (start < 0) {
+            // all the levels of the topic are consumed
+            matches.addAll(node.values.values());
+            return;
+        }
+
+        Node<T> multiLevel = node.multiLevel;
+        if (multiLevel != null) {
+            matches.addAll(multiLevel.values.values());
+        }
+
+        int levelEnd = AwsIotTopicFilter.getLevelEnd(topic, start, end);
+        int next = AwsIotTopicFilter.getNextLevel(levelEnd, end);
+
+        Node<T> child = node.children.get(topic, start, levelEnd);
+        if (child != null) {
+            match(child, topic, next, end, matches);
+        }
+
+        Node<T> singleLevel = node.singleLevel;
+        if (singleLevel != null) {
+            match(singleLevel, topic, next, end, matches);
+        }
+    }
+
+    private T remove(Node<T> node, AwsIotTopicFilter topicFilter, int index) {
+        if (index == topicFilter.getLevelCount()) {
+            return node.values.remove(topicFilter.getFilter());
+        }
+
+        String level = topicFilter.getLevel(index);
+        Node<T> child = node.getChild(level);
+        if (child == null) {
+            return null;
+        }
+
+        T value = remove(child, topicFilter, index + 1);
+        if (child.isEmpty()) {
+            node.removeChild(level);
+        }
+        return value;
+    }
+
+    /**
+     * A node of the trie representing one level of the topic filters.
+     */
+    private static class Node<T> {
+
+        private final ConcurrentMap<String, T> values = new ConcurrentHashMap<>();
+        private volatile LevelTable<Node<T>> children = LevelTable.empty();
+        private volatile Node<T> singleLevel;
+        private volatile Node<T> multiLevel;
+
+        private Node<T> getChild(String level) {
+            if (AwsIotTopicFilter.SINGLE_LEVEL_WILDCARD.equals(level)) {
+                return singleLevel;
+            } else if (AwsIotTopicFilter.MULTI_LEVEL_WILDCARD.equals(level)) {
+                return multiLevel;
+            } else {
+                return children.get(level, 0, level.length());
+            }
+        }
+
+        private Node<T> getOrCreateChild(String level) {
+            Node<T> child = getChild(level);
+            if (child != null) {
+                return child;
+            }
+
+            child = new Node<>();
+            if (AwsIotTopicFilter.SINGLE_LEVEL_WILDCARD.equals(level)) {
+                singleLevel = child;
+            } else if (AwsIotTopicFilter.MULTI_LEVEL_WILDCARD.equals(level)) {
+                multiLevel = child;
+            } else {
+                children = children.with(level, child);
+            }
+            return child;
+        }
+
+        private void removeChild(String level) {
+            if (AwsIotTopicFilter.SINGLE_LEVEL_WILDCARD.equals(level)) {
+                singleLevel = null;
+            } else if (AwsIotTopicFilter.MULTI_LEVEL_WILDCARD.equals(level)) {
+                multiLevel = null;
+            } else {
+                children = children.without(level);
+            }
+        }
+
+        private boolean isEmpty() {
+            return values.isEmpty() && children.size == 0 && singleLevel == null && multiLevel == null;
+        }
+
+    }
+
+    /**
+     * An immutable open-addressing hash table keyed by topic level. It can be
+     * looked up with a region of a topic string so no level string has to be
+     * created while matching. Updates create a new table.
+     */
+    private static class LevelTable<V> {
+
+        private static final LevelTable<Object> EMPTY = new LevelTable<>(new String[1], new Object[1], 0);
+
+        private final String[] keys;
+        private final Object[] values;
+        private final int size;
+
+        private LevelTable(String[] keys, Object[] values, int size) {
+            this.keys = keys;
+            this.values = values;
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> LevelTable<V> empty() {
+            return (LevelTable<V>) EMPTY;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V get(String str, int start, int end) {
+            int length = end - start;
+            int mask = keys.length - 1;
+            for (int i = hash(str, start, end) & mask;; i = (i + 1) & mask) {
+                String key = keys[i];
+                if (key == null) {
+                    return null;
+                }
+                if (key.length() == length && key.regionMatches(0, str, start, length)) {
+                    return (V) values[i];
+                }
+            }
+        }
+
+        private LevelTable<V> with(String level, V value) {
+            LevelTable<V> table = resize(size + 1);
+            table.insert(level, value);
+            return new LevelTable<>(table.keys, table.values, size + 1);
+        }
+
+        private LevelTable<V> without(String level) {
+            LevelTable<V> table = new LevelTable<>(new String[capacityFor(size)], new Object[capacityFor(size)], 0);
+            int remaining = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null && !keys[i].equals(level)) {
+                    table.insert(keys[i], values[i]);
+                    remaining++;
+                }
+            }
+            return new LevelTable<>(table.keys, table.values, remaining);
+        }
+
+        private LevelTable<V> resize(int newSize) {
+            int capacity = capacityFor(newSize);
+            LevelTable<V> table = new LevelTable<>(new String[capacity], new Object[capacity], 0);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    table.insert(keys[i], values[i]);
+                }
+            }
+            return table;
+        }
+
+        private void insert(String key, Object value) {
+            int mask = keys.length - 1;
+            int i = hash(key, 0, key.length()) & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        private static int capacityFor(int size) {
+            // keep the load factor at or below 0.5
+            int capacity = 2;
+            while (capacity < size * 2) {
+                capacity <<= 1;
+            }
+            return capacity;
+        }
+
+        private static int hash(String str, int start, int end) {
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + str.charAt(i);
+            }
+            return h ^ (h >>> 16);
+        }
+
+    }
+
+}
@@ -52,7 +52,10 @@ public class AwsIotMqttClientListener implements MqttCallback {
 
     @Override
     public void messageArrived(String topic, MqttMessage arg1) throws Exception {
-        AWSIotMessage message = new AWSIotMessage(topic, AWSIotQos.valueOf(arg1.getQos()), arg1.getPayload());
+        // the MQTT message is discarded after this callback, so its payload
+        // can be handed over to our message without copying
+        AWSIotMessage message = new AWSIotMessage(topic, AWSIotQos.valueOf(arg1.getQos()));
+        message.setSharedPayload(arg1.getPayload());
         client.dispatch(message);
     }
 
@@ -21,9 +21,11 @@ import java.util.Set;
 import javax.net.SocketFactory;
 
 import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.ScheduledExecutorPingSender;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 
 import com.amazonaws.services.iot.client.AWSIotException;
@@ -31,6 +33,7 @@ import com.amazonaws.services.iot.client.AWSIotMessage;
 import com.amazonaws.services.iot.client.core.AbstractAwsIotClient;
 import com.amazonaws.services.iot.client.core.AwsIotConnection;
 import com.amazonaws.services.iot.client.core.AwsIotMessageCallback;
+import com.amazonaws.services.iot.client.core.AwsIotInflightLimitException;
 import com.amazonaws.services.iot.client.core.AwsIotRetryableException;
 
 import lombok.Getter;
@@ -46,8 +49,9 @@ public class AwsIotMqttConnection extends AwsIotConnection {
 
     private static final String USERNAME_METRIC_STRING = "?SDK=Java&Version=1.3.7";
     private final SocketFactory socketFactory;
+    private final String serverUri;
 
-    private MqttAsyncClient mqttClient;
+    private volatile MqttAsyncClient mqttClient;
     private AwsIotMqttMessageListener messageListener;
     private AwsIotMqttClientListener clientListener;
 
@@ -56,29 +60,77 @@ public class AwsIotMqttConnection extends AwsIotConnection {
         super(client);
 
         this.socketFactory = socketFactory;
+        this.serverUri = serverUri;
 
         messageListener = new AwsIotMqttMessageListener(client);
         clientListener = new AwsIotMqttClientListener(client);
-
-        try {
-            mqttClient = new MqttAsyncClient(serverUri, client.getClientId(), new MemoryPersistence());
-            mqttClient.setCallback(clientListener);
-        } catch (MqttException e) {
-            throw new AWSIotException(e);
-        }
     }
 
     AwsIotMqttConnection(AbstractAwsIotClient client, MqttAsyncClient mqttClient) throws AWSIotException {
         super(client);
         this.mqttClient = mqttClient;
         this.socketFactory = null;
+        this.serverUri = null;
+    }
+
+    /**
+     * Creates the Paho MQTT client if it hasn't been created yet. It's created
+     * when the connection is first opened rather than when this object is
+     * constructed, so it uses the persistence configured on the client at
+     * that time.
+     *
+     * @return the Paho MQTT client
+     * @throws AWSIotException
+     *             this exception is thrown when the client can't be created,
+     *             e.g. the persistence fails to open
+     */
+    private synchronized MqttAsyncClient createMqttClient() throws AWSIotException {
+        if (mqttClient == null) {
+            MqttClientPersistence persistence = client.getPersistence();
+            if (persistence == null) {
+                persistence = new MemoryPersistence();
+            }
+
+            try {
+                MqttAsyncClient newClient;
+                if (client.getExecutionService() != null && !client.isExecutionServiceOwned()) {
+                    // keep-alive pings share the application's thread pool
+                    // rather than starting a timer thread per client
+                    newClient = new MqttAsyncClient(serverUri, client.getClientId(), persistence,
+                            new ScheduledExecutorPingSender(client.getExecutionService()));
+                } else {
+                    newClient = new MqttAsyncClient(serverUri, client.getClientId(), persistence);
+                }
+                newClient.setCallback(clientListener);
+                mqttClient = newClient;
+            } catch (MqttException e) {
+                throw new AWSIotException(e);
+            }
+        }
+        return mqttClient;
+    }
+
+    /**
+     * Gets the Paho MQTT client for sending requests.
+     *
+     * @return the Paho MQTT client
+     * @throws AwsIotRetryableException
+     *             this exception is thrown when the connection has never been
+     *             opened, so the request can be queued
+     */
+    private MqttAsyncClient getOpenedClient() throws AwsIotRetryableException {
+        MqttAsyncClient openedClient = mqttClient;
+        if (openedClient == null) {
+            throw new AwsIotRetryableException("Client is not connected");
+        }
+        return openedClient;
     }
 
     public void openConnection(AwsIotMessageCallback callback) throws AWSIotException {
         try {
             AwsIotMqttConnectionListener connectionListener = new AwsIotMqttConnectionListener(client, true, callback);
             MqttConnectOptions options = buildMqttConnectOptions(client, socketFactory);
-            mqttClient.connect(options, null, connectionListener);
+            createMqttClient().connect(options, null, connectionListener);
         } catch (MqttException e) {
             throw new AWSIotException(e);
         }
@@ -87,7 +139,7 @@ public class AwsIotMqttConnection extends AwsIotConnection {
     public void closeConnection(AwsIotMessageCallback callback) throws AWSIotException {
         try {
             AwsIotMqttConnectionListener connectionListener = new AwsIotMqttConnectionListener(client, false, callback);
-            mqttClient.disconnect(0, null, connectionListener);
+            createMqttClient().disconnect(0, null, connectionListener);
         } catch (MqttException e) {
             throw new AWSIotException(e);
         }
@@ -96,24 +148,32 @@ public class AwsIotMqttConnection extends AwsIotConnection {
     @Override
     public void publishMessage(AWSIotMessage message) throws AWSIotException, AwsIotRetryableException {
         String topic = message.getTopic();
-        MqttMessage mqttMessage = new MqttMessage(message.getPayload());
+        MqttMessage mqttMessage = new MqttMessage(message.getSharedPayload());
         mqttMessage.setQos(message.getQos().getValue());
 
         try {
-            mqttClient.publish(topic, mqttMessage, message, messageListener);
+            getOpenedClient().publish(topic, mqttMessage, message, messageListener);
         } catch (MqttException e) {
             if (e.getReasonCode() == MqttException.REASON_CODE_CLIENT_NOT_CONNECTED) {
                 throw new AwsIotRetryableException(e);
+            } else if (e.getReasonCode() == MqttException.REASON_CODE_MAX_INFLIGHT) {
+                throw new AwsIotInflightLimitException(e);
             } else {
                 throw new AWSIotException(e);
             }
         }
     }
 
+    @Override
+    public int getInflightMessageCount() {
+        MqttAsyncClient openedClient = mqttClient;
+        return (openedClient != null) ? openedClient.getInFlightMessageCount() : 0;
+    }
+
     @Override
     public void subscribeTopic(AWSIotMessage message) throws AWSIotException, AwsIotRetryableException {
         try {
-            mqttClient.subscribe(message.getTopic(), message.getQos().getValue(), message, messageListener);
+            getOpenedClient().subscribe(message.getTopic(), message.getQos().getValue(), message, messageListener);
         } catch (MqttException e) {
             if (e.getReasonCode() == MqttException.REASON_CODE_CLIENT_NOT_CONNECTED) {
                 throw new AwsIotRetryableException(e);
@@ -126,7 +186,7 @@ public class AwsIotMqttConnection extends AwsIotConnection {
     @Override
     public void unsubscribeTopic(AWSIotMessage message) throws AWSIotException, AwsIotRetryableException {
         try {
-            mqttClient.unsubscribe(message.getTopic(), message, messageListener);
+            getOpenedClient().unsubscribe(message.getTopic(), message, messageListener);
         } catch (MqttException e) {
             if (e.getReasonCode() == MqttException.REASON_CODE_CLIENT_NOT_CONNECTED) {
                 throw new AwsIotRetryableException(e);
@@ -147,6 +207,7 @@ public class AwsIotMqttConnection extends AwsIotConnection {
         options.setCleanSession(client.isCleanSession());
         options.setConnectionTimeout(client.getConnectionTimeout() / 1000);
         options.setKeepAliveInterval(client.getKeepAliveInterval() / 1000);
+        options.setMaxInflight(client.getMaxInflight());
         if(client.isClientEnableMetrics()) {
             options.setUserName(USERNAME_METRIC_STRING);
         }
@@ -161,7 +222,7 @@ public class AwsIotMqttConnection extends AwsIotConnection {
         if (client.getWillMessage() != null) {
             AWSIotMessage message = client.getWillMessage();
 
-            options.setWill(message.getTopic(), message.getPayload(), message.getQos().getValue(), false);
+            options.setWill(message.getTopic(), message.getSharedPayload(), message.getQos().getValue(), false);
         }
 
         return options;
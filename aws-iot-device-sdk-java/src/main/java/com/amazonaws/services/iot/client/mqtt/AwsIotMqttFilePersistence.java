@@ -0,0 +1,555 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.mqtt;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+
+/**
+ * This class implements an MQTT client persistence backed by segmented log
+ * files, for storing the state of in-flight QoS 1 messages so they can be
+ * resent after the process is restarted.
+ * <p>
+ * Unlike the file persistence of the Paho library, which writes one file for
+ * each message, every update is appended as a record to the active log
+ * segment, and the log is only forced to the storage device at most once per
+ * sync interval, so many updates share one sync. An update that isn't synced
+ * right away schedules a sync at the end of the interval on a shared daemon
+ * thread, so every update is durable within one sync interval, even when no
+ * other update follows it. The current state is also
+ * kept in memory to serve reads. When the active segment is full, a new
+ * segment is started with a snapshot of the current state, and the older
+ * segments are deleted.
+ * </p>
+ * <p>
+ * Each record is checksummed, so a record that was only partially written
+ * when the process crashed is discarded on recovery, along with the records
+ * following it.
+ * </p>
+ * <p>
+ * An instance stores the state of one client only. It can be reopened by the
+ * same client ID and server URI, but opening it for another client while it's
+ * open fails, as their message IDs would overwrite each other.
+ * </p>
+ */
+public class AwsIotMqttFilePersistence implements MqttClientPersistence {
+
+    private static final Logger LOGGER = Logger.getLogger(AwsIotMqttFilePersistence.class.getName());
+
+    private static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final long DEFAULT_SYNC_INTERVAL = 100;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String LOCK_FILE = ".lck";
+
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_REMOVE = 2;
+
+    private static final ScheduledExecutorService SYNC_SCHEDULER = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "aws-iot-persistence-sync");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final File baseDirectory;
+    private final int segmentSize;
+    private final long syncInterval;
+
+    private final Map<String, Data> entries = new HashMap<>();
+
+    private String name;
+    private File directory;
+    private FileLock lock;
+    private FileChannel channel;
+    private long segmentId;
+    private long lastSyncTime;
+    private boolean unsynced;
+    private Future<?> syncTask;
+
+    /**
+     * Instantiates a new file persistence with a segment size of 16MB and a
+     * sync interval of 100ms.
+     *
+     * @param directory
+     *            the base directory, under which a directory is created for
+     *            each client ID and server URI
+     */
+    public AwsIotMqttFilePersistence(String directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_SYNC_INTERVAL);
+    }
+
+    /**
+     * Instantiates a new file persistence.
+     *
+     * @param directory
+     *            the base directory, under which a directory is created for
+     *            each client ID and server URI
+     * @param segmentSize
+     *            the size in bytes after which a new log segment is started
+     * @param syncInterval
+     *            the minimum interval in milliseconds between two syncs of
+     *            the log to the storage device. If it's 0 or less, the log is
+     *            synced after every update.
+     */
+    public AwsIotMqttFilePersistence(String directory, int segmentSize, long syncInterval) {
+        this.baseDirectory = new File(directory);
+        this.segmentSize = segmentSize;
+        this.syncInterval = syncInterval;
+    }
+
+    @Override
+    public synchronized void open(String clientId, String serverURI) throws MqttPersistenceException {
+        String name = clientId + "-" + serverURI;
+        if (channel != null) {
+            if (name.equals(this.name)) {
+                return;
+            }
+            // the instance is already storing the state of another client
+            throw new MqttPersistenceException(MqttPersistenceException.REASON_CODE_PERSISTENCE_IN_USE);
+        }
+
+        directory = new File(baseDirectory, getDirectoryName(name));
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new MqttPersistenceException(new IOException("Failed to create directory " + directory));
+        }
+
+        lock = acquireLock(new File(directory, LOCK_FILE));
+
+        try {
+            List<File> segments = recover();
+            startSegment(segments);
+            this.name = name;
+        } catch (IOException e) {
+            releaseLock();
+            throw new MqttPersistenceException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws MqttPersistenceException {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            sync();
+            channel.close();
+        } catch (IOException e) {
+            throw new MqttPersistenceException(e);
+        } finally {
+            channel = null;
+            name = null;
+            entries.clear();
+            releaseLock();
+        }
+    }
+
+    @Override
+    public synchronized void put(String key, MqttPersistable persistable) throws MqttPersistenceException {
+        checkOpen();
+
+        try {
+            Data data = new Data(copy(persistable.getHeaderBytes(), persistable.getHeaderOffset(),
+                    persistable.getHeaderLength()), copy(persistable.getPayloadBytes(),
+                    persistable.getPayloadOffset(), persistable.getPayloadLength()));
+            append(RECORD_PUT, key, data);
+            entries.put(key, data);
+            maybeSync();
+        } catch (IOException e) {
+            throw new MqttPersistenceException(e);
+        }
+    }
+
+    @Override
+    public synchronized MqttPersistable get(String key) throws MqttPersistenceException {
+        checkOpen();
+        return entries.get(key);
+    }
+
+    @Override
+    public synchronized void remove(String key) throws MqttPersistenceException {
+        checkOpen();
+        if (!entries.containsKey(key)) {
+            return;
+        }
+
+        try {
+            append(RECORD_REMOVE, key, null);
+            entries.remove(key);
+            maybeSync();
+        } catch (IOException e) {
+            throw new MqttPersistenceException(e);
+        }
+    }
+
+    @Override
+    public synchronized Enumeration<String> keys() throws MqttPersistenceException {
+        checkOpen();
+        return Collections.enumeration(new ArrayList<>(entries.keySet()));
+    }
+
+    @Override
+    public synchronized void clear() throws MqttPersistenceException {
+        checkOpen();
+
+        entries.clear();
+        try {
+            rollSegment();
+        } catch (IOException e) {
+            throw new MqttPersistenceException(e);
+        }
+    }
+
+    @Override
+    public synchronized boolean containsKey(String key) throws MqttPersistenceException {
+        checkOpen();
+        return entries.containsKey(key);
+    }
+
+    private void checkOpen() throws MqttPersistenceException {
+        if (channel == null) {
+            throw new MqttPersistenceException();
+        }
+    }
+
+    private void append(byte type, String key, Data data) throws IOException {
+        if (channel.position() >= segmentSize) {
+            rollSegment();
+        }
+        write(type, key, data);
+    }
+
+    private void write(byte type, String key, Data data) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 1 + 4 + keyBytes.length;
+        if (data != null) {
+            bodyLength += 4 + data.header.length + 4 + data.payload.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 + bodyLength + 8);
+        buffer.putInt(bodyLength);
+        buffer.put(type);
+        buffer.putInt(keyBytes.length);
+        buffer.put(keyBytes);
+        if (data != null) {
+            buffer.putInt(data.header.length);
+            buffer.put(data.header);
+            buffer.putInt(data.payload.length);
+            buffer.put(data.payload);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, bodyLength);
+        buffer.putLong(crc.getValue());
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        unsynced = true;
+    }
+
+    private void maybeSync() throws IOException {
+        long elapsed = System.currentTimeMillis() - lastSyncTime;
+        if (elapsed >= syncInterval) {
+            sync();
+        } else if (syncTask == null) {
+            // synced at the end of the interval if no other update does it
+            syncTask = SYNC_SCHEDULER.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    onSyncDeadline();
+                }
+            }, syncInterval - elapsed, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void onSyncDeadline() {
+        syncTask = null;
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            sync();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to sync log segment", e);
+        }
+    }
+
+    private void sync() throws IOException {
+        if (syncTask != null) {
+            syncTask.cancel(false);
+            syncTask = null;
+        }
+
+        if (unsynced) {
+            channel.force(false);
+            unsynced = false;
+        }
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Starts a new segment with a snapshot of the current state, then deletes
+     * all the older segments.
+     */
+    private void rollSegment() throws IOException {
+        List<File> segments = listSegments();
+        sync();
+        channel.close();
+        startSegment(segments);
+    }
+
+    private void startSegment(List<File> olderSegments) throws IOException {
+        File file = new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, segmentId++, SEGMENT_SUFFIX));
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        channel.truncate(0);
+
+        for (Map.Entry<String, Data> entry : entries.entrySet()) {
+            write(RECORD_PUT, entry.getKey(), entry.getValue());
+        }
+        // the snapshot must be durable before the older segments are deleted
+        unsynced = true;
+        sync();
+
+        for (File segment : olderSegments) {
+            if (!segment.delete()) {
+                LOGGER.warning("Failed to delete log segment " + segment);
+            }
+        }
+    }
+
+    private List<File> recover() throws IOException {
+        List<File> segments = listSegments();
+
+        for (File segment : segments) {
+            segmentId = Math.max(segmentId, getSegmentId(segment) + 1);
+
+            try (RandomAccessFile file = new RandomAccessFile(segment, "r")) {
+                byte[] bytes = new byte[(int) file.length()];
+                file.readFully(bytes);
+
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (readRecord(buffer)) {
+                    // replay all the valid records in the segment
+                }
+                if (buffer.hasRemaining()) {
+                    LOGGER.warning("Discarded " + buffer.remaining() + " bytes of incomplete records in " + segment);
+                }
+            }
+        }
+
+        if (!entries.isEmpty()) {
+            LOGGER.info("Recovered " + entries.size() + " persisted entries from " + directory);
+        }
+        return segments;
+    }
+
+    private boolean readRecord(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < 4) {
+            return false;
+        }
+
+        int bodyLength = buffer.getInt();
+        if (bodyLength <= 0 || buffer.remaining() < bodyLength + 8) {
+            buffer.position(start);
+            return false;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), start + 4, bodyLength);
+        if (buffer.getLong(start + 4 + bodyLength) != crc.getValue()) {
+            buffer.position(start);
+            return false;
+        }
+
+        byte type = buffer.get();
+        byte[] key = new byte[buffer.getInt()];
+        buffer.get(key);
+        if (type == RECORD_PUT) {
+            byte[] header = new byte[buffer.getInt()];
+            buffer.get(header);
+            byte[] payload = new byte[buffer.getInt()];
+            buffer.get(payload);
+            entries.put(new String(key, StandardCharsets.UTF_8), new Data(header, payload));
+        } else {
+            entries.remove(new String(key, StandardCharsets.UTF_8));
+        }
+
+        buffer.position(start + 4 + bodyLength + 8);
+        return true;
+    }
+
+    private List<File> listSegments() throws IOException {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)
+                        && getSegmentId(new File(dir, name)) >= 0;
+            }
+        });
+        if (files == null) {
+            throw new IOException("Failed to list directory " + directory);
+        }
+
+        Arrays.sort(files);
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    private static FileLock acquireLock(File file) throws MqttPersistenceException {
+        FileChannel lockChannel = null;
+        try {
+            lockChannel = new RandomAccessFile(file, "rw").getChannel();
+            FileLock fileLock = lockChannel.tryLock();
+            if (fileLock != null) {
+                return fileLock;
+            }
+        } catch (IOException | OverlappingFileLockException e) {
+            LOGGER.warning("Failed to lock " + file + ": " + e);
+        }
+
+        if (lockChannel != null) {
+            try {
+                lockChannel.close();
+            } catch (IOException e) {
+                // ignore errors as the lock wasn't acquired anyway
+            }
+        }
+        throw new MqttPersistenceException(MqttPersistenceException.REASON_CODE_PERSISTENCE_IN_USE);
+    }
+
+    private void releaseLock() {
+        if (lock == null) {
+            return;
+        }
+
+        try {
+            lock.release();
+            lock.channel().close();
+        } catch (IOException e) {
+            LOGGER.warning("Failed to release the lock of " + directory);
+        }
+        lock = null;
+    }
+
+    private static long getSegmentId(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private static String getDirectoryName(String name) {
+        // keep only the characters that are safe in file names, the same way
+        // as the file persistence of the Paho library
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '-') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static byte[] copy(byte[] bytes, int offset, int length) {
+        if (bytes == null) {
+            return new byte[0];
+        }
+        return Arrays.copyOfRange(bytes, offset, offset + length);
+    }
+
+    /**
+     * The persisted data of an entry.
+     */
+    private static class Data implements MqttPersistable {
+
+        private final byte[] header;
+        private final byte[] payload;
+
+        private Data(byte[] header, byte[] payload) {
+            this.header = header;
+            this.payload = payload;
+        }
+
+        @Override
+        public byte[] getHeaderBytes() {
+            return header;
+        }
+
+        @Override
+        public int getHeaderOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getHeaderLength() {
+            return header.length;
+        }
+
+        @Override
+        public byte[] getPayloadBytes() {
+            return payload;
+        }
+
+        @Override
+        public int getPayloadOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getPayloadLength() {
+            return payload.length;
+        }
+
+    }
+
+}
@@ -18,10 +18,12 @@ package com.amazonaws.services.iot.client.mqtt;
 import java.util.logging.Logger;
 
 import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.IMqttToken;
 import org.eclipse.paho.client.mqttv3.internal.wire.MqttSuback;
 
 import com.amazonaws.services.iot.client.AWSIotMessage;
+import com.amazonaws.services.iot.client.AWSIotTopic;
 import com.amazonaws.services.iot.client.core.AbstractAwsIotClient;
 
 /**
@@ -61,9 +63,14 @@ public class AwsIotMqttMessageListener implements IMqttActionListener {
         }
 
         final boolean isSuccess = !forceFailure;
-        client.scheduleTask(new Runnable() {
+        final boolean isPublish = token instanceof IMqttDeliveryToken;
+        complete(message, new Runnable() {
             @Override
             public void run() {
+                if (isPublish) {
+                    onPublishComplete();
+                }
+
                 if (isSuccess) {
                     message.onSuccess();
                 } else {
@@ -82,12 +89,32 @@ public class AwsIotMqttMessageListener implements IMqttActionListener {
         }
 
         LOGGER.warning("Request failed for topic " + message.getTopic() + ": " + token.getException());
-        client.scheduleTask(new Runnable() {
+        final boolean isPublish = token instanceof IMqttDeliveryToken;
+        complete(message, new Runnable() {
             @Override
             public void run() {
+                if (isPublish) {
+                    onPublishComplete();
+                }
+
                 message.onFailure();
             }
         });
     }
 
+    private void complete(AWSIotMessage message, Runnable completion) {
+        if (client.isInlineCallbacks()
+                || (message instanceof AWSIotTopic && ((AWSIotTopic) message).isInlineCallback())) {
+            // called on the Paho callback thread, which must not be blocked
+            completion.run();
+        } else {
+            client.scheduleCompletion(completion);
+        }
+    }
+
+    private void onPublishComplete() {
+        // an in-flight slot has been freed up
+        client.getConnection().onPublishComplete();
+    }
+
 }
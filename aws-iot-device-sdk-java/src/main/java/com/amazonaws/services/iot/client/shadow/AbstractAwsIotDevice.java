@@ -19,12 +19,17 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,9 +45,12 @@ import com.amazonaws.services.iot.client.core.AbstractAwsIotClient;
 import com.amazonaws.services.iot.client.shadow.AwsIotDeviceCommandManager.Command;
 import com.amazonaws.services.iot.client.shadow.AwsIotDeviceCommandManager.CommandAck;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -55,10 +63,20 @@ public abstract class AbstractAwsIotDevice {
 
     private static final Logger LOGGER = Logger.getLogger(AbstractAwsIotDevice.class.getName());
 
+    private static final Function<String, Void> IGNORE_RESULT = new Function<String, Void>() {
+        @Override
+        public Void apply(String result) {
+            return null;
+        }
+    };
+
     protected final String thingName;
 
     protected long reportInterval = AWSIotConfig.DEVICE_REPORT_INTERVAL;
     protected boolean enableVersioning = AWSIotConfig.DEVICE_ENABLE_VERSIONING;
+    protected boolean reportChangesOnly = AWSIotConfig.DEVICE_REPORT_CHANGES_ONLY;
+    protected long reportDebounce = AWSIotConfig.DEVICE_REPORT_DEBOUNCE;
+    protected long reportMaxLatency = AWSIotConfig.DEVICE_REPORT_MAX_LATENCY;
     protected AWSIotQos deviceReportQos = AWSIotQos.valueOf(AWSIotConfig.DEVICE_REPORT_QOS);
     protected AWSIotQos shadowUpdateQos = AWSIotQos.valueOf(AWSIotConfig.DEVICE_SHADOW_UPDATE_QOS);
     protected AWSIotQos methodQos = AWSIotQos.valueOf(AWSIotConfig.DEVICE_METHOD_QOS);
@@ -66,20 +84,37 @@ public abstract class AbstractAwsIotDevice {
 
     private final Map<String, Field> reportedProperties;
     private final Map<String, Field> updatableProperties;
+    @Getter(AccessLevel.PACKAGE)
+    private final AwsIotDeviceCodec codec;
     private final AwsIotDeviceCommandManager commandManager;
+    private final AwsIotDeviceReportTrigger reportTrigger;
     private final ConcurrentMap<String, Boolean> deviceSubscriptions;
     private final ObjectMapper jsonObjectMapper;
 
     private AbstractAwsIotClient client;
     private Future<?> syncTask;
     private AtomicLong localVersion;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final AtomicReference<ObjectNode> acceptedReport;
 
     protected AbstractAwsIotDevice(String thingName) {
         this.thingName = thingName;
 
-        reportedProperties = getDeviceProperties(true, false);
-        updatableProperties = getDeviceProperties(false, true);
+        reportedProperties = new HashMap<>();
+        updatableProperties = new HashMap<>();
+        getDeviceProperties(reportedProperties, updatableProperties);
+
+        // the generated codec calls the accessors directly, so they only
+        // need to be looked up through reflection without it
+        AwsIotDeviceCodec generatedCodec = getGeneratedCodec();
+        if (generatedCodec != null) {
+            codec = generatedCodec;
+        } else {
+            codec = new AwsIotReflectionDeviceCodec(this.getClass(), reportedProperties, updatableProperties);
+        }
         commandManager = new AwsIotDeviceCommandManager(this);
+        reportTrigger = new AwsIotDeviceReportTrigger(this);
 
         deviceSubscriptions = new ConcurrentHashMap<>();
         for (String topic : getDeviceTopics()) {
@@ -92,6 +127,8 @@ public abstract class AbstractAwsIotDevice {
         jsonObjectMapper.registerModule(module);
 
         localVersion = new AtomicLong(-1);
+        acceptedReport = new AtomicReference<>();
+        resetAcceptedReport();
     }
 
     protected AbstractAwsIotDevice getDevice() {
@@ -112,6 +149,11 @@ public abstract class AbstractAwsIotDevice {
         commandManager.runCommand(Command.GET, message, timeout);
     }
 
+    protected CompletableFuture<String> getAsync(long timeout) {
+        AWSIotMessage message = new AWSIotMessage(null, methodQos);
+        return commandManager.runCommandAsync(Command.GET, message, timeout);
+    }
+
     protected void update(String jsonState) throws AWSIotException {
         AWSIotMessage message = new AWSIotMessage(null, methodQos, jsonState);
         commandManager.runCommandSync(Command.UPDATE, message);
@@ -126,6 +168,11 @@ public abstract class AbstractAwsIotDevice {
         commandManager.runCommand(Command.UPDATE, message, timeout);
     }
 
+    protected CompletableFuture<Void> updateAsync(String jsonState, long timeout) {
+        AWSIotMessage message = new AWSIotMessage(null, methodQos, jsonState);
+        return commandManager.runCommandAsync(Command.UPDATE, message, timeout).thenApply(IGNORE_RESULT);
+    }
+
     protected void delete() throws AWSIotException {
         AWSIotMessage message = new AWSIotMessage(null, methodQos);
         commandManager.runCommandSync(Command.DELETE, message);
@@ -140,6 +187,11 @@ public abstract class AbstractAwsIotDevice {
         commandManager.runCommand(Command.DELETE, message, timeout);
     }
 
+    protected CompletableFuture<Void> deleteAsync(long timeout) {
+        AWSIotMessage message = new AWSIotMessage(null, methodQos);
+        return commandManager.runCommandAsync(Command.DELETE, message, timeout).thenApply(IGNORE_RESULT);
+    }
+
     protected void onShadowUpdate(String jsonState) {
         // synchronized block to serialize device accesses
         synchronized (this) {
@@ -163,6 +215,17 @@ public abstract class AbstractAwsIotDevice {
         }
     }
 
+    public void markDirty() {
+        reportTrigger.markDirty(null);
+    }
+
+    public void markDirty(String propertyName) {
+        if (propertyName == null) {
+            throw new IllegalArgumentException("Null property name");
+        }
+        reportTrigger.markDirty(propertyName);
+    }
+
     public void activate() throws AWSIotException {
         stopSync();
 
@@ -217,47 +280,44 @@ public abstract class AbstractAwsIotDevice {
     }
 
     protected void startSync() {
-        // don't start the publish task if no properties are to be published
-        if (reportedProperties.isEmpty() || reportInterval <= 0) {
+        // don't start reporting if no properties are to be published
+        if (!codec.hasReportedProperties()) {
+            return;
+        }
+
+        reportTrigger.start();
+
+        // without the publish task, the device reports only when its
+        // properties are marked dirty
+        if (reportInterval <= 0) {
             return;
         }
 
         syncTask = client.scheduleRoutineTask(new Runnable() {
             @Override
             public void run() {
-                if (!isCommandReady(Command.UPDATE)) {
-                    LOGGER.fine("Device not ready for reporting");
-                    return;
-                }
-                
-                long reportVersion = localVersion.get();
-                if (enableVersioning && reportVersion < 0) {
-                    // if versioning is enabled, synchronize the version first
-                    LOGGER.fine("Starting version sync");
-                    startVersionSync();
-                    return;
-                }
-
-                String jsonState = onDeviceReport();
-                if (jsonState != null) {
-                    LOGGER.fine("Sending device report");
-                    sendDeviceReport(reportVersion, jsonState);
-                }
+                reportDevice(null);
             }
         }, 0l, reportInterval);
     }
 
     protected void stopSync() {
+        reportTrigger.stop();
+
         if (syncTask != null) {
             syncTask.cancel(false);
             syncTask = null;
         }
 
         localVersion.set(-1);
+        resetAcceptedReport();
     }
 
     protected void startVersionSync() {
         localVersion.set(-1);
+        // the shadow may have been updated by others, so report everything
+        // once the version is synchronized
+        resetAcceptedReport();
 
         AwsIotDeviceSyncMessage message = new AwsIotDeviceSyncMessage(null, shadowUpdateQos, this);
         try {
@@ -269,7 +329,102 @@ public abstract class AbstractAwsIotDevice {
         }
     }
 
-    private void sendDeviceReport(long reportVersion, String jsonState) {
+    void resetAcceptedReport() {
+        // a new empty report each time, so reports generated against the
+        // previous one can't replace it once they're accepted
+        acceptedReport.set(jsonObjectMapper.createObjectNode());
+    }
+
+    void onDeviceReportAccepted(ObjectNode baseState, ObjectNode reportedState) {
+        ObjectNode newState = baseState.deepCopy();
+        newState.setAll(reportedState);
+
+        // the accepted report is left as is if it has been reset, or replaced
+        // by another report, since this report was generated
+        acceptedReport.compareAndSet(baseState, newState);
+    }
+
+    boolean reportDevice(Set<String> properties) {
+        if (!isCommandReady(Command.UPDATE)) {
+            LOGGER.fine("Device not ready for reporting");
+            return false;
+        }
+
+        long reportVersion = localVersion.get();
+        if (enableVersioning && reportVersion < 0) {
+            // if versioning is enabled, synchronize the version first
+            LOGGER.fine("Starting version sync");
+            startVersionSync();
+            return false;
+        }
+
+        String jsonState = onDeviceReport();
+        if (jsonState == null) {
+            return true;
+        }
+
+        if (!reportChangesOnly && properties == null) {
+            LOGGER.fine("Sending device report");
+            sendDeviceReport(reportVersion, jsonState, null, null);
+            return true;
+        }
+
+        // changes are found against the last accepted report; otherwise,
+        // only the given properties are reported
+        ObjectNode baseState = reportChangesOnly ? acceptedReport.get() : null;
+        ObjectNode reportedState = getReportedState(jsonState, baseState, reportChangesOnly ? null : properties);
+        if (reportedState == null) {
+            LOGGER.fine("No device changes to report");
+            return true;
+        }
+
+        try {
+            jsonState = jsonObjectMapper.writeValueAsString(reportedState);
+        } catch (JsonProcessingException e) {
+            LOGGER.log(Level.WARNING, "Failed to generate device report", e);
+            return true;
+        }
+
+        LOGGER.fine("Sending partial device report");
+        sendDeviceReport(reportVersion, jsonState, baseState, reportChangesOnly ? reportedState : null);
+        return true;
+    }
+
+    private ObjectNode getReportedState(String jsonState, ObjectNode baseState, Set<String> properties) {
+        JsonNode state;
+        try {
+            state = jsonObjectMapper.readTree(jsonState);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to parse device report", e);
+            return null;
+        }
+        if (state == null || !state.isObject()) {
+            LOGGER.warning("Device report is not a JSON object");
+            return null;
+        }
+
+        if (baseState == null && properties == null) {
+            return state.size() > 0 ? (ObjectNode) state : null;
+        }
+
+        ObjectNode reportedState = jsonObjectMapper.createObjectNode();
+        Iterator<Map.Entry<String, JsonNode>> fields = state.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (baseState != null && field.getValue().equals(baseState.get(field.getKey()))) {
+                continue;
+            }
+            if (properties != null && !properties.contains(field.getKey())) {
+                continue;
+            }
+            reportedState.set(field.getKey(), field.getValue());
+        }
+
+        return reportedState.size() > 0 ? reportedState : null;
+    }
+
+    private void sendDeviceReport(long reportVersion, String jsonState, ObjectNode baseState,
+            ObjectNode changedState) {
         StringBuilder payload = new StringBuilder("{");
 
         if (enableVersioning) {
@@ -278,7 +433,7 @@ public abstract class AbstractAwsIotDevice {
         payload.append("\"state\":{\"reported\":").append(jsonState).append("}}");
 
         AwsIotDeviceReportMessage message = new AwsIotDeviceReportMessage(null, shadowUpdateQos, reportVersion,
-                payload.toString(), this);
+                payload.toString(), this, baseState, changedState);
         if (enableVersioning && reportVersion != localVersion.get()) {
             LOGGER.warning("Local version number has changed, skip reporting for this round");
             return;
@@ -293,9 +448,7 @@ public abstract class AbstractAwsIotDevice {
         }
     }
 
-    private Map<String, Field> getDeviceProperties(boolean enableReport, boolean allowUpdate) {
-        Map<String, Field> properties = new HashMap<>();
-
+    private void getDeviceProperties(Map<String, Field> reported, Map<String, Field> updatable) {
         for (Field field : this.getClass().getDeclaredFields()) {
             AWSIotDeviceProperty annotation = field.getAnnotation(AWSIotDeviceProperty.class);
             if (annotation == null) {
@@ -303,12 +456,27 @@ public abstract class AbstractAwsIotDevice {
             }
 
             String propertyName = annotation.name().length() > 0 ? annotation.name() : field.getName();
-            if ((enableReport && annotation.enableReport()) || (allowUpdate && annotation.allowUpdate())) {
-                properties.put(propertyName, field);
+            if (annotation.enableReport()) {
+                reported.put(propertyName, field);
+            }
+            if (annotation.allowUpdate()) {
+                updatable.put(propertyName, field);
             }
         }
+    }
 
-        return properties;
+    private AwsIotDeviceCodec getGeneratedCodec() {
+        String codecName = this.getClass().getName() + AwsIotDeviceCodec.CLASS_SUFFIX;
+        try {
+            Class<?> codecClass = Class.forName(codecName, true, this.getClass().getClassLoader());
+            return (AwsIotDeviceCodec) codecClass.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            LOGGER.log(Level.WARNING, "Failed to load generated codec " + codecName + ", falling back to reflection",
+                    e);
+            return null;
+        }
     }
 
     private List<String> getDeviceTopics() {
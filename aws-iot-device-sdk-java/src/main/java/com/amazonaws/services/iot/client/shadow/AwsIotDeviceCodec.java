@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.services.iot.client.shadow;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * This interface defines how the properties of a device, i.e. its fields
+ * annotated with {@link com.amazonaws.services.iot.client.AWSIotDeviceProperty},
+ * are written to the shadow reports and updated from the shadow deltas.
+ * <p>
+ * The annotation processor in the {@code aws-iot-device-sdk-java-codegen}
+ * module generates an implementation for each device class at compile time,
+ * named after the device class with {@link #CLASS_SUFFIX} appended, which
+ * calls the getters and setters directly. Device classes without a generated
+ * codec fall back to {@link AwsIotReflectionDeviceCodec}.
+ * </p>
+ */
+public interface AwsIotDeviceCodec {
+
+    /**
+     * The suffix appended to the binary name of a device class to get the
+     * name of its generated codec.
+     */
+    String CLASS_SUFFIX = "_AwsIotCodec";
+
+    /**
+     * Checks whether the device has any property to be reported.
+     *
+     * @return true if the device has properties to be reported
+     */
+    boolean hasReportedProperties();
+
+    /**
+     * Checks whether the device class keeps the default implementation of
+     * {@code onShadowUpdate}. If so, the deltas are applied while the delta
+     * messages are parsed, rather than being passed to
+     * {@code onShadowUpdate} as a string.
+     *
+     * @return true if {@code onShadowUpdate} isn't overridden
+     */
+    boolean isDefaultShadowUpdate();
+
+    /**
+     * Writes the reported properties of the device as the fields of a JSON
+     * object.
+     *
+     * @param device
+     *            the device
+     * @param generator
+     *            the generator positioned where the object starts
+     * @throws IOException
+     *             this exception is thrown when a property can't be read or
+     *             written
+     */
+    void serialize(AbstractAwsIotDevice device, JsonGenerator generator) throws IOException;
+
+    /**
+     * Updates the device properties from a delta document. Fields that don't
+     * match an updatable property are skipped.
+     *
+     * @param device
+     *            the device
+     * @param parser
+     *            the parser positioned at the start of the delta object. Its
+     *            codec is used for values of types other than the primitive
+     *            types and strings.
+     * @throws IOException
+     *             this exception is thrown when the document is invalid or a
+     *             property can't be updated
+     */
+    void applyDelta(AbstractAwsIotDevice device, JsonParser parser) throws IOException;
+
+}
@@ -72,6 +72,10 @@ public class AwsIotDeviceCommand extends AwsIotCompletion {
         return (response != null) ? response.getStringPayload() : null;
     }
 
+    public boolean isDeviceReport() {
+        return request instanceof AwsIotDeviceReportMessage;
+    }
+
     public boolean onReady(AbstractAwsIotDevice device) {
         try {
             LOGGER.info("Request is resumed: " + command.name() + "/" + commandId);
@@ -88,7 +92,7 @@ public class AwsIotDeviceCommand extends AwsIotCompletion {
         if (response == null) {
             return;
         } else {
-            request.setPayload(response.getPayload());
+            request.setSharedPayload(response);
         }
 
         super.onSuccess();
@@ -36,6 +36,10 @@ public class AwsIotDeviceCommandAckListener extends AWSIotTopic {
         this.device = device;
     }
 
+    public AbstractAwsIotDevice getDevice() {
+        return device;
+    }
+
     @Override
     public void onMessage(AWSIotMessage message) {
         device.onCommandAck(message);
@@ -21,8 +21,10 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -31,6 +33,7 @@ import com.amazonaws.services.iot.client.AWSIotDeviceErrorCode;
 import com.amazonaws.services.iot.client.AWSIotException;
 import com.amazonaws.services.iot.client.AWSIotMessage;
 import com.amazonaws.services.iot.client.AWSIotTimeoutException;
+import com.amazonaws.services.iot.client.core.AwsIotCompletion;
 import com.amazonaws.services.iot.client.core.AwsIotRuntimeException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -132,6 +135,30 @@ public class AwsIotDeviceCommandManager {
 
     public String runCommand(Command command, AWSIotMessage request, long commandTimeout, boolean isAsync)
             throws AWSIotException, AWSIotTimeoutException {
+        AwsIotDeviceCommand deviceCommand = sendCommand(command, request, commandTimeout, isAsync);
+        return deviceCommand.get(device);
+    }
+
+    public CompletableFuture<String> runCommandAsync(Command command, AWSIotMessage request, long commandTimeout) {
+        final AwsIotDeviceCommand deviceCommand;
+        try {
+            deviceCommand = sendCommand(command, request, commandTimeout, true);
+            deviceCommand.get(device);
+        } catch (AWSIotException | AWSIotTimeoutException e) {
+            return AwsIotCompletion.failedFuture(e);
+        }
+
+        return deviceCommand.getFuture().thenApply(new Function<Void, String>() {
+            @Override
+            public String apply(Void result) {
+                AWSIotMessage response = deviceCommand.getResponse();
+                return (response != null) ? response.getStringPayload() : null;
+            }
+        });
+    }
+
+    private AwsIotDeviceCommand sendCommand(Command command, AWSIotMessage request, long commandTimeout,
+            boolean isAsync) throws AWSIotException {
         String commandId = newCommandId();
         appendCommandId(request, commandId);
 
@@ -151,7 +178,7 @@ public class AwsIotDeviceCommandManager {
             throw e;
         }
 
-        return deviceCommand.get(device);
+        return deviceCommand;
     }
 
     public void onCommandAck(AWSIotMessage response) {
@@ -174,6 +201,13 @@ public class AwsIotDeviceCommandManager {
         }
 
         if (success) {
+            if (Command.DELETE.equals(command.getCommand())
+                    || (Command.UPDATE.equals(command.getCommand()) && !command.isDeviceReport())) {
+                // the reported state has been changed by other means than the
+                // device reports
+                device.resetAcceptedReport();
+            }
+
             command.setResponse(response);
             command.onSuccess();
         } else {
@@ -233,7 +267,7 @@ public class AwsIotDeviceCommandManager {
             final AwsIotDeviceCommand deviceCommand = entry.getValue();
             LOGGER.warning("Request was cancelled: " + deviceCommand.getCommand().name() + "/"
                     + deviceCommand.getCommandId());
-            device.getClient().scheduleTask(new Runnable() {
+            device.getClient().scheduleCompletion(new Runnable() {
                 @Override
                 public void run() {
                     deviceCommand.onFailure();
@@ -16,12 +16,16 @@
 package com.amazonaws.services.iot.client.shadow;
 
 import java.io.IOException;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.amazonaws.services.iot.client.AWSIotMessage;
 import com.amazonaws.services.iot.client.AWSIotQos;
 import com.amazonaws.services.iot.client.AWSIotTopic;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 /**
  * This class extends {@link AWSIotTopic} to provide a callback function for
@@ -38,8 +42,17 @@ public class AwsIotDeviceDeltaListener extends AWSIotTopic {
         this.device = device;
     }
 
+    public AbstractAwsIotDevice getDevice() {
+        return device;
+    }
+
     @Override
     public void onMessage(AWSIotMessage message) {
+        if (device.getCodec().isDefaultShadowUpdate()) {
+            onDelta(message);
+            return;
+        }
+
         String payload = message.getStringPayload();
         if (payload == null) {
             LOGGER.warning("Received empty delta for device " + device.getThingName());
@@ -84,6 +97,106 @@ public class AwsIotDeviceDeltaListener extends AWSIotTopic {
         device.onShadowUpdate(node.toString());
     }
 
+    /**
+     * Applies the delta in a single pass over the message payload, without
+     * building a tree or converting the state back to a string. The state is
+     * applied as soon as it's reached, unless versioning is enabled and the
+     * version hasn't been read yet, in which case the state is buffered as
+     * tokens until the version has been checked.
+     *
+     * @param message
+     *            the delta message
+     */
+    private void onDelta(AWSIotMessage message) {
+        byte[] payload = message.getSharedPayload();
+        if (payload == null || payload.length == 0) {
+            LOGGER.warning("Received empty delta for device " + device.getThingName());
+            return;
+        }
+
+        // synchronized block to serialize device accesses
+        synchronized (device) {
+            try (JsonParser parser = device.getJsonObjectMapper().getFactory().createParser(payload)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException();
+                }
+
+                Long version = null;
+                TokenBuffer state = null;
+                boolean stateApplied = false;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+
+                    if ("version".equals(name) && version == null) {
+                        version = parser.getValueAsLong();
+                    } else if ("state".equals(name) && state == null && !stateApplied) {
+                        if (!device.enableVersioning || version != null) {
+                            if (device.enableVersioning && !updateVersion(version)) {
+                                return;
+                            }
+                            if (!applyState(parser)) {
+                                return;
+                            }
+                            stateApplied = true;
+                        } else {
+                            state = new TokenBuffer(parser);
+                            state.copyCurrentStructure(parser);
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+
+                if (device.enableVersioning && !stateApplied) {
+                    if (version == null) {
+                        LOGGER.warning("Missing version field in delta for device " + device.getThingName());
+                        return;
+                    }
+                    if (!updateVersion(version)) {
+                        return;
+                    }
+                }
+
+                if (state != null) {
+                    try (JsonParser stateParser = state.asParser(parser.getCodec())) {
+                        stateParser.nextToken();
+                        applyState(stateParser);
+                    }
+                } else if (!stateApplied) {
+                    LOGGER.warning("Missing state field in delta for device " + device.getThingName());
+                }
+            } catch (IOException e) {
+                LOGGER.warning("Received invalid delta for device " + device.getThingName());
+            }
+        }
+    }
+
+    private boolean updateVersion(long receivedVersion) {
+        long localVersion = device.getLocalVersion().get();
+        if (receivedVersion < localVersion) {
+            LOGGER.warning("An old version of delta received for " + device.getThingName() + ", local "
+                    + localVersion + ", received " + receivedVersion);
+            return false;
+        }
+
+        device.getLocalVersion().set(receivedVersion);
+        LOGGER.info("Local version number updated to " + receivedVersion);
+        return true;
+    }
+
+    private boolean applyState(JsonParser parser) {
+        try {
+            device.getCodec().applyDelta(device, parser);
+            return true;
+        } catch (IOException e) {
+            // the payload is parsed along with the state, so the rest of it
+            // can't be read either
+            LOGGER.log(Level.WARNING, "Failed to update device", e);
+            return false;
+        }
+    }
+
     @Override
     public void onSuccess() {
     }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.iot.client.shadow;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import lombok.Getter;
+
+/**
+ * This class provides access to a device property through its getter and
+ * setter methods. The methods are looked up once, when the device is created,
+ * and kept as method handles adapted to a generic type, so reporting and
+ * updating the property don't involve any reflective lookups, and the calls
+ * can be inlined by the JIT compiler.
+ * <p>
+ * A missing getter or setter doesn't fail the device creation; like before,
+ * the error is reported when the property is accessed.
+ * </p>
+ */
+public class AwsIotDevicePropertyAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    @Getter
+    private final Field field;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final Exception getterError;
+    private final Exception setterError;
+
+    /**
+     * Instantiates a new accessor for the device property.
+     *
+     * @param deviceClass
+     *            the class of the device
+     * @param field
+     *            the field of the property
+     * @param withGetter
+     *            whether the getter is looked up
+     * @param withSetter
+     *            whether the setter is looked up
+     */
+    public AwsIotDevicePropertyAccessor(Class<?> deviceClass, Field field, boolean withGetter, boolean withSetter) {
+        this.field = field;
+
+        MethodHandle handle = null;
+        Exception error = null;
+        if (withGetter) {
+            try {
+                handle = MethodHandles.publicLookup().unreflect(findGetterMethod(deviceClass, field))
+                        .asType(GETTER_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+                error = e;
+            }
+        }
+        this.getter = handle;
+        this.getterError = error;
+
+        handle = null;
+        error = null;
+        if (withSetter) {
+            try {
+                handle = MethodHandles.publicLookup().unreflect(findSetterMethod(deviceClass, field))
+                        .asType(SETTER_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+                error = e;
+            }
+        }
+        this.setter = handle;
+        this.setterError = error;
+    }
+
+    /**
+     * Gets the value of the property by calling its getter.
+     *
+     * @param device
+     *            the device
+     * @return the value of the property
+     * @throws IOException
+     *             this exception is thrown when the getter fails
+     */
+    public Object get(AbstractAwsIotDevice device) throws IOException {
+        if (getter == null) {
+            throw new IllegalArgumentException(getterError);
+        }
+
+        try {
+            return (Object) getter.invokeExact((Object) device);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Sets the value of the property by calling its setter.
+     *
+     * @param device
+     *            the device
+     * @param value
+     *            the new value of the property
+     * @throws IOException
+     *             this exception is thrown when the setter fails
+     */
+    public void set(AbstractAwsIotDevice device, Object value) throws IOException {
+        if (setter == null) {
+            throw new IllegalArgumentException(setterError);
+        }
+
+        try {
+            setter.invokeExact((Object) device, value);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static Method findGetterMethod(Class<?> deviceClass, Field field) throws NoSuchMethodException {
+        String fieldName = Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+
+        try {
+            return deviceClass.getMethod("get" + fieldName);
+        } catch (NoSuchMethodException e) {
+            if (boolean.class.equals(field.getType())) {
+                return deviceClass.getMethod("is" + fieldName);
+            }
+            throw e;
+        }
+    }
+
+    private static Method findSetterMethod(Class<?> deviceClass, Field field) throws NoSuchMethodException {
+        String setter = "set" + Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+        return deviceClass.getMethod(setter, field.getType());
+    }
+
+}
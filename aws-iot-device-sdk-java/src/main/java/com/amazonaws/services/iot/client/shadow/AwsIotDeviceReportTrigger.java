@@ -0,0 +1,197 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.services.iot.client.shadow;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.amazonaws.services.iot.client.core.AwsIotRuntimeException;
+
+/**
+ * This class triggers device reports when device properties are marked dirty,
+ * instead of waiting for the periodic report. A report is sent once no
+ * property has been marked dirty for the debounce window, so a burst of
+ * changes goes out as one report, but no later than the maximum latency after
+ * the first unreported change.
+ * <p>
+ * Nothing is scheduled while no property is dirty, so idle devices don't cost
+ * any work.
+ * </p>
+ */
+public class AwsIotDeviceReportTrigger {
+
+    private static final Logger LOGGER = Logger.getLogger(AwsIotDeviceReportTrigger.class.getName());
+
+    /**
+     * The delay before trying again when the device isn't ready for
+     * reporting, e.g. while its subscriptions or version synchronization are
+     * still in progress.
+     */
+    private static final long RETRY_DELAY = 1000;
+
+    private final AbstractAwsIotDevice device;
+    private final Set<String> dirtyProperties = new HashSet<>();
+    private boolean allPropertiesDirty;
+    private long firstDirtyTime;
+    private long lastDirtyTime;
+    private boolean started;
+    private Future<?> reportTask;
+
+    private final Runnable reportRunnable = new Runnable() {
+        @Override
+        public void run() {
+            report();
+        }
+    };
+
+    public AwsIotDeviceReportTrigger(AbstractAwsIotDevice device) {
+        this.device = device;
+    }
+
+    /**
+     * Marks a property dirty, and schedules a report if none is scheduled
+     * yet.
+     *
+     * @param propertyName
+     *            the name of the property, or null to mark all the properties
+     *            dirty
+     */
+    public void markDirty(String propertyName) {
+        synchronized (this) {
+            long now = currentTime();
+            if (!isDirty()) {
+                firstDirtyTime = now;
+            }
+            lastDirtyTime = now;
+
+            if (propertyName == null) {
+                allPropertiesDirty = true;
+            } else {
+                dirtyProperties.add(propertyName);
+            }
+
+            if (started && reportTask == null) {
+                schedule(getReportDelay(now));
+            }
+        }
+    }
+
+    /**
+     * Starts triggering reports. Properties marked dirty while the device was
+     * inactive are reported right away.
+     */
+    public void start() {
+        synchronized (this) {
+            started = true;
+
+            if (isDirty() && reportTask == null) {
+                schedule(0);
+            }
+        }
+    }
+
+    /**
+     * Stops triggering reports. The dirty properties are kept, to be reported
+     * once the trigger is started again.
+     */
+    public void stop() {
+        synchronized (this) {
+            started = false;
+
+            if (reportTask != null) {
+                reportTask.cancel(false);
+                reportTask = null;
+            }
+        }
+    }
+
+    private void report() {
+        Set<String> properties;
+        synchronized (this) {
+            if (!started || !isDirty()) {
+                reportTask = null;
+                return;
+            }
+
+            // properties marked dirty since the report was scheduled move the
+            // report further out, up to the maximum latency
+            long delay = getReportDelay(currentTime());
+            if (delay > 0) {
+                schedule(delay);
+                return;
+            }
+
+            reportTask = null;
+            properties = allPropertiesDirty ? null : new HashSet<>(dirtyProperties);
+            allPropertiesDirty = false;
+            dirtyProperties.clear();
+        }
+
+        if (device.reportDevice(properties)) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!isDirty()) {
+                firstDirtyTime = currentTime();
+                lastDirtyTime = firstDirtyTime;
+            }
+
+            if (properties == null) {
+                allPropertiesDirty = true;
+            } else {
+                dirtyProperties.addAll(properties);
+            }
+
+            if (started && reportTask == null) {
+                LOGGER.fine("Device not ready for reporting, retrying in " + RETRY_DELAY + "ms");
+                schedule(RETRY_DELAY);
+            }
+        }
+    }
+
+    private void schedule(long delay) {
+        try {
+            reportTask = device.getClient().scheduleTimeoutTask(reportRunnable, delay);
+        } catch (AwsIotRuntimeException | RejectedExecutionException e) {
+            // the client is disconnected, the trigger will be started again
+            // on reconnect
+            reportTask = null;
+        }
+    }
+
+    private long getReportDelay(long now) {
+        long reportTime = lastDirtyTime + Math.max(device.getReportDebounce(), 0);
+        if (device.getReportMaxLatency() > 0) {
+            reportTime = Math.min(reportTime, firstDirtyTime + device.getReportMaxLatency());
+        }
+        return Math.max(reportTime - now, 0);
+    }
+
+    private boolean isDirty() {
+        return allPropertiesDirty || !dirtyProperties.isEmpty();
+    }
+
+    private static long currentTime() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+}
@@ -16,9 +16,6 @@
 package com.amazonaws.services.iot.client.shadow;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -37,12 +34,7 @@ public class AwsIotJsonSerializer extends JsonSerializer<AbstractAwsIotDevice> {
         generator.writeStartObject();
 
         try {
-            for (String property : device.getReportedProperties().keySet()) {
-                Field field = device.getReportedProperties().get(property);
-
-                Object value = invokeGetterMethod(device, field);
-                generator.writeObjectField(property, value);
-            }
+            device.getCodec().serialize(device, generator);
         } catch (IllegalArgumentException e) {
             throw new IOException(e);
         }
@@ -50,33 +42,4 @@ public class AwsIotJsonSerializer extends JsonSerializer<AbstractAwsIotDevice> {
         generator.writeEndObject();
     }
 
-    private static Object invokeGetterMethod(Object target, Field field) throws IOException {
-        String fieldName = Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
-        String getter = "get" + fieldName;
-
-        Method method;
-        try {
-            method = target.getClass().getMethod(getter);
-        } catch (NoSuchMethodException | SecurityException e) {
-            if (e instanceof NoSuchMethodException && boolean.class.equals(field.getType())) {
-                getter = "is" + fieldName;
-                try {
-                    method = target.getClass().getMethod(getter);
-                } catch (NoSuchMethodException | SecurityException ie) {
-                    throw new IllegalArgumentException(ie);
-                }
-            } else {
-                throw new IllegalArgumentException(e);
-            }
-        }
-
-        Object value;
-        try {
-            value = method.invoke(target);
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-            throw new IOException(e);
-        }
-        return value;
-    }
-
 }
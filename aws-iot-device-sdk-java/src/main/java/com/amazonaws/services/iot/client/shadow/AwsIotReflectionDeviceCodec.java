@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.services.iot.client.shadow;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.amazonaws.services.iot.client.AWSIotDevice;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * This class implements {@link AwsIotDeviceCodec} for device classes without
+ * a generated codec. The getters and setters of the properties are looked up
+ * through reflection once, when the device is created, and called through
+ * {@link AwsIotDevicePropertyAccessor}.
+ */
+public class AwsIotReflectionDeviceCodec implements AwsIotDeviceCodec {
+
+    private final Map<String, AwsIotDevicePropertyAccessor> reportedAccessors;
+    private final Map<String, AwsIotDevicePropertyAccessor> updatableAccessors;
+    private final boolean defaultShadowUpdate;
+
+    /**
+     * Instantiates a new codec for the device class.
+     *
+     * @param deviceClass
+     *            the class of the device
+     * @param reportedProperties
+     *            the fields of the reported properties by property name
+     * @param updatableProperties
+     *            the fields of the updatable properties by property name
+     */
+    public AwsIotReflectionDeviceCodec(Class<?> deviceClass, Map<String, Field> reportedProperties,
+            Map<String, Field> updatableProperties) {
+        this.reportedAccessors = getPropertyAccessors(deviceClass, reportedProperties, true, false);
+        this.updatableAccessors = getPropertyAccessors(deviceClass, updatableProperties, false, true);
+        this.defaultShadowUpdate = isDefaultShadowUpdate(deviceClass);
+    }
+
+    @Override
+    public boolean hasReportedProperties() {
+        return !reportedAccessors.isEmpty();
+    }
+
+    @Override
+    public boolean isDefaultShadowUpdate() {
+        return defaultShadowUpdate;
+    }
+
+    @Override
+    public void serialize(AbstractAwsIotDevice device, JsonGenerator generator) throws IOException {
+        for (Map.Entry<String, AwsIotDevicePropertyAccessor> property : reportedAccessors.entrySet()) {
+            Object value = property.getValue().get(device);
+            generator.writeObjectField(property.getKey(), value);
+        }
+    }
+
+    @Override
+    public void applyDelta(AbstractAwsIotDevice device, JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            AwsIotDevicePropertyAccessor accessor = updatableAccessors.get(parser.getCurrentName());
+            parser.nextToken();
+            if (accessor == null) {
+                parser.skipChildren();
+                continue;
+            }
+
+            Object value = parser.readValueAs(accessor.getField().getType());
+            accessor.set(device, value);
+        }
+    }
+
+    private static boolean isDefaultShadowUpdate(Class<?> deviceClass) {
+        for (Class<?> c = deviceClass; c != AWSIotDevice.class && c != AbstractAwsIotDevice.class
+                && c != null; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("onShadowUpdate", String.class);
+                return false;
+            } catch (NoSuchMethodException e) {
+                // not overridden by this class
+            } catch (SecurityException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, AwsIotDevicePropertyAccessor> getPropertyAccessors(Class<?> deviceClass,
+            Map<String, Field> properties, boolean withGetter, boolean withSetter) {
+        Map<String, AwsIotDevicePropertyAccessor> accessors = new HashMap<>();
+
+        for (Map.Entry<String, Field> property : properties.entrySet()) {
+            accessors.put(property.getKey(),
+                    new AwsIotDevicePropertyAccessor(deviceClass, property.getValue(), withGetter, withSetter));
+        }
+
+        return accessors;
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.services.iot.client.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.iot.client.AWSIotConnectionStatus;
+import com.amazonaws.services.iot.client.AWSIotException;
+import com.amazonaws.services.iot.client.AWSIotMessage;
+import com.amazonaws.services.iot.client.AWSIotOfflineQueuePolicy;
+import com.amazonaws.services.iot.client.AWSIotQos;
+
+public class AwsIotConnectionBackpressureTest {
+
+    private AbstractAwsIotClient client;
+    private TestConnection connection;
+
+    @Before
+    public void setUp() {
+        client = mock(AbstractAwsIotClient.class);
+        when(client.isPublishBackpressure()).thenReturn(true);
+        when(client.getPublishBackpressureQueueSize()).thenReturn(2);
+        when(client.getOfflineQueuePolicy()).thenReturn(AWSIotOfflineQueuePolicy.REJECT_NEW);
+        connection = new TestConnection(client);
+    }
+
+    @Test
+    public void testQueueIsBounded() throws AWSIotException {
+        connection.publish(new TestMessage());
+        connection.publish(new TestMessage());
+
+        try {
+            connection.publish(new TestMessage());
+            fail("Expected the backpressure queue to be full");
+        } catch (AWSIotException e) {
+            assertEquals("Publish backpressure queue is full", e.getMessage());
+        }
+        assertEquals(2, connection.getInflightWaitQueue().size());
+    }
+
+    @Test
+    public void testWaitingMessagesFailOnClose() throws AWSIotException {
+        TestMessage first = new TestMessage();
+        TestMessage second = new TestMessage();
+        connection.publish(first);
+        connection.publish(second);
+
+        connection.onConnectionClosed();
+
+        assertTrue(first.failed);
+        assertTrue(second.failed);
+        assertTrue(connection.getInflightWaitQueue().isEmpty());
+
+        // the queue has room again once it's been emptied
+        connection.connectionStatus = AWSIotConnectionStatus.CONNECTED;
+        connection.publish(new TestMessage());
+        connection.publish(new TestMessage());
+    }
+
+    @Test
+    public void testWaitingMessagesMoveOfflineOnFailure() throws AWSIotException {
+        when(client.getMaxOfflineQueueSize()).thenReturn(10);
+        when(client.getMaxConnectionRetries()).thenReturn(5);
+
+        TestMessage first = new TestMessage();
+        TestMessage second = new TestMessage();
+        connection.publish(first);
+        connection.publish(second);
+
+        connection.onConnectionFailure();
+
+        assertFalse(first.failed);
+        assertFalse(second.failed);
+        assertTrue(connection.getInflightWaitQueue().isEmpty());
+        assertEquals(2, connection.getPublishQueue().size());
+        assertEquals(first, connection.getPublishQueue().peek());
+    }
+
+    private static class TestMessage extends AWSIotMessage {
+
+        private boolean failed;
+
+        private TestMessage() {
+            super("topic", AWSIotQos.QOS1, "payload");
+        }
+
+        @Override
+        public void onFailure() {
+            failed = true;
+        }
+
+    }
+
+    private static class TestConnection extends AwsIotConnection {
+
+        private TestConnection(AbstractAwsIotClient client) {
+            super(client);
+            connectionStatus = AWSIotConnectionStatus.CONNECTED;
+        }
+
+        @Override
+        protected void publishMessage(AWSIotMessage message) throws AWSIotException {
+            // all the in-flight slots are taken
+            throw new AwsIotInflightLimitException(new Exception("Too many publishes in progress"));
+        }
+
+        @Override
+        protected void openConnection(AwsIotMessageCallback callback) {
+        }
+
+        @Override
+        protected void closeConnection(AwsIotMessageCallback callback) {
+        }
+
+        @Override
+        protected int getInflightMessageCount() {
+            return 0;
+        }
+
+        @Override
+        protected void subscribeTopic(AWSIotMessage message) {
+        }
+
+        @Override
+        protected void unsubscribeTopic(AWSIotMessage message) {
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.services.iot.client.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.iot.client.AWSIotMessage;
+import com.amazonaws.services.iot.client.AWSIotOfflineQueuePolicy;
+import com.amazonaws.services.iot.client.AWSIotQos;
+
+public class AwsIotMemoryOfflineQueueTest {
+
+    private static final int COALESCED_COUNT = 10000;
+
+    private AbstractAwsIotClient client;
+
+    @Before
+    public void setUp() {
+        client = mock(AbstractAwsIotClient.class);
+        when(client.getMaxOfflineQueueSize()).thenReturn(3);
+    }
+
+    @Test
+    public void testCoalescingBehindQos0HeadStaysBounded() {
+        AwsIotMemoryOfflineQueue queue = new AwsIotMemoryOfflineQueue(client,
+                AWSIotOfflineQueuePolicy.DROP_LOWEST_QOS, true);
+
+        queue.offer(new AWSIotMessage("topic/a", AWSIotQos.QOS0, "a"));
+        for (int i = 0; i < COALESCED_COUNT; i++) {
+            queue.offer(new AWSIotMessage("topic/b", AWSIotQos.QOS0, "b" + i));
+        }
+
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.getQos0Size());
+
+        // the head is still the oldest QoS 0 message to be dropped
+        queue.offer(new AWSIotMessage("topic/c", AWSIotQos.QOS1, "c"));
+        queue.offer(new AWSIotMessage("topic/d", AWSIotQos.QOS1, "d"));
+        assertEquals(3, queue.size());
+        assertEquals(1, queue.getQos0Size());
+        assertEquals("topic/b", queue.poll().getTopic());
+        assertEquals(0, queue.getQos0Size());
+    }
+
+    @Test
+    public void testQos0ListOnlyKeptForDropLowestQos() {
+        AwsIotMemoryOfflineQueue queue = new AwsIotMemoryOfflineQueue(client, AWSIotOfflineQueuePolicy.DROP_OLDEST,
+                true);
+
+        AWSIotMessage head = new AWSIotMessage("topic/a", AWSIotQos.QOS0, "a");
+        queue.offer(head);
+        for (int i = 0; i < COALESCED_COUNT; i++) {
+            queue.offer(new AWSIotMessage("topic/b", AWSIotQos.QOS0, "b" + i));
+        }
+
+        assertEquals(2, queue.size());
+        assertEquals(0, queue.getQos0Size());
+        assertSame(head, queue.peek());
+    }
+
+    @Test
+    public void testDropLowestQosInOrder() {
+        AwsIotMemoryOfflineQueue queue = new AwsIotMemoryOfflineQueue(client,
+                AWSIotOfflineQueuePolicy.DROP_LOWEST_QOS, false);
+
+        queue.offer(new AWSIotMessage("topic/1", AWSIotQos.QOS1, "1"));
+        queue.offer(new AWSIotMessage("topic/2", AWSIotQos.QOS0, "2"));
+        queue.offer(new AWSIotMessage("topic/3", AWSIotQos.QOS0, "3"));
+        queue.offer(new AWSIotMessage("topic/4", AWSIotQos.QOS1, "4"));
+        queue.offer(new AWSIotMessage("topic/5", AWSIotQos.QOS1, "5"));
+
+        assertEquals(3, queue.size());
+        assertEquals(0, queue.getQos0Size());
+        assertEquals("topic/1", queue.poll().getTopic());
+        assertEquals("topic/4", queue.poll().getTopic());
+        assertEquals("topic/5", queue.poll().getTopic());
+    }
+
+}
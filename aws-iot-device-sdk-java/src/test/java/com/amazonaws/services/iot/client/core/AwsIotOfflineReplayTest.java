@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.services.iot.client.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.iot.client.AWSIotConnectionStatus;
+import com.amazonaws.services.iot.client.AWSIotMessage;
+import com.amazonaws.services.iot.client.AWSIotOfflineQueuePolicy;
+import com.amazonaws.services.iot.client.AWSIotQos;
+
+public class AwsIotOfflineReplayTest {
+
+    private AbstractAwsIotClient client;
+
+    @Before
+    public void setUp() {
+        client = mock(AbstractAwsIotClient.class);
+        when(client.getMaxOfflineQueueSize()).thenReturn(2);
+    }
+
+    @Test
+    public void testDropOldestDuringSend() {
+        when(client.getOfflineQueuePolicy()).thenReturn(AWSIotOfflineQueuePolicy.DROP_OLDEST);
+
+        TestMessage first = new TestMessage("topic/1");
+        TestMessage second = new TestMessage("topic/2");
+        TestMessage live = new TestMessage("topic/3");
+        TestConnection connection = new TestConnection(client, live);
+        connection.getPublishQueue().offer(first);
+        connection.getPublishQueue().offer(second);
+
+        replay(connection);
+
+        // the live message evicts the head while it's being sent, which must
+        // not take the next message out of the queue
+        assertEquals(Arrays.asList(first, second, live), connection.sent);
+        assertTrue(first.failed);
+        assertFalse(second.failed);
+        assertFalse(live.failed);
+        assertEquals(0, connection.getPublishQueue().size());
+    }
+
+    @Test
+    public void testCoalescingDuringSend() {
+        when(client.getOfflineQueuePolicy()).thenReturn(AWSIotOfflineQueuePolicy.REJECT_NEW);
+        when(client.isOfflineQueueCoalescing()).thenReturn(true);
+
+        TestMessage first = new TestMessage("topic/1");
+        TestMessage second = new TestMessage("topic/2");
+        TestMessage replacement = new TestMessage("topic/1");
+        TestConnection connection = new TestConnection(client, replacement);
+        connection.getPublishQueue().offer(first);
+        connection.getPublishQueue().offer(second);
+
+        replay(connection);
+
+        assertEquals(Arrays.asList(first, second, replacement), connection.sent);
+        assertFalse(second.failed);
+        assertFalse(replacement.failed);
+        assertEquals(0, connection.getPublishQueue().size());
+    }
+
+    @Test
+    public void testRemoveComparesIdentity() {
+        AwsIotOfflineQueue queue = new AwsIotMemoryOfflineQueue(client);
+        TestMessage first = new TestMessage("topic/1");
+        TestMessage second = new TestMessage("topic/1");
+        queue.offer(first);
+        queue.offer(second);
+
+        assertFalse(queue.remove(second));
+        assertTrue(queue.remove(first));
+        assertTrue(queue.remove(second));
+        assertEquals(0, queue.size());
+    }
+
+    private void replay(TestConnection connection) {
+        AwsIotOfflineReplay replay = new AwsIotOfflineReplay(client, connection);
+        replay.start();
+        replay.run();
+        assertFalse(replay.isRunning());
+    }
+
+    private static class TestMessage extends AWSIotMessage {
+
+        private boolean failed;
+
+        private TestMessage(String topic) {
+            super(topic, AWSIotQos.QOS1, "payload");
+        }
+
+        @Override
+        public void onFailure() {
+            failed = true;
+        }
+
+    }
+
+    private static class TestConnection extends AwsIotConnection {
+
+        private final List<AWSIotMessage> sent = new ArrayList<>();
+        private AWSIotMessage liveMessage;
+
+        private TestConnection(AbstractAwsIotClient client, AWSIotMessage liveMessage) {
+            super(client);
+            this.liveMessage = liveMessage;
+            connectionStatus = AWSIotConnectionStatus.CONNECTED;
+        }
+
+        @Override
+        protected void publishMessage(AWSIotMessage message) {
+            sent.add(message);
+
+            // a live message is queued while the replay is sending
+            if (liveMessage != null) {
+                getPublishQueue().offer(liveMessage);
+                liveMessage = null;
+            }
+        }
+
+        @Override
+        protected void openConnection(AwsIotMessageCallback callback) {
+        }
+
+        @Override
+        protected void closeConnection(AwsIotMessageCallback callback) {
+        }
+
+        @Override
+        protected int getInflightMessageCount() {
+            return 0;
+        }
+
+        @Override
+        protected void subscribeTopic(AWSIotMessage message) {
+        }
+
+        @Override
+        protected void unsubscribeTopic(AWSIotMessage message) {
+        }
+
+    }
+
+}
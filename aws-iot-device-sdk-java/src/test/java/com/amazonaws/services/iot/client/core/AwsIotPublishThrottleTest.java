@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.services.iot.client.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.amazonaws.services.iot.client.AWSIotMessage;
+import com.amazonaws.services.iot.client.AWSIotQos;
+
+public class AwsIotPublishThrottleTest {
+
+    @Test
+    public void testEncodedLength() {
+        String[] topics = { "", "sensors/1", "capteurs/temp\u00e9rature", "\u30bb\u30f3\u30b5\u30fc/\u6e29\u5ea6",
+                "devices/\uD83D\uDE00", "broken/\uD83D", "broken/\uDE00/end" };
+
+        for (String topic : topics) {
+            assertEquals(topic, topic.getBytes(StandardCharsets.UTF_8).length,
+                    AwsIotPublishThrottle.getEncodedLength(topic));
+        }
+    }
+
+    @Test
+    public void testSizeCountsTopicBytes() {
+        AWSIotMessage message = new AWSIotMessage("\u30bb\u30f3\u30b5\u30fc/\u6e29\u5ea6", AWSIotQos.QOS0, "{}");
+
+        assertEquals(21, AwsIotPublishThrottle.getSize(message));
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.services.iot.client.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AwsIotSubscriptionIndexTest {
+
+    private AwsIotSubscriptionIndex<String> index;
+
+    @Before
+    public void setUp() {
+        index = new AwsIotSubscriptionIndex<>();
+    }
+
+    @Test
+    public void testTrailingSeparatorFilters() {
+        subscribe("a/b", "a/b/");
+        assertMatches("a/b", "a/b", "a/b/");
+        assertMatches("a/b/", "a/b", "a/b/");
+
+        unsubscribe("a/b/");
+        assertMatches("a/b", "a/b");
+        assertMatches("a/b/", "a/b");
+
+        subscribe("a/b/");
+        unsubscribe("a/b");
+        assertMatches("a/b", "a/b/");
+    }
+
+    @Test
+    public void testTrailingSeparatorWildcardFilters() {
+        subscribe("a/+", "a/+/", "a/#");
+        assertMatches("a/b", "a/+", "a/+/", "a/#");
+
+        unsubscribe("a/+");
+        assertMatches("a/b/", "a/+/", "a/#");
+
+        unsubscribe("a/#");
+        assertMatches("a/b/c");
+        assertMatches("a/b", "a/+/");
+    }
+
+    @Test
+    public void testSpecialFilters() {
+        subscribe("/", "#", "a/#/b", "+");
+        assertMatches("/", "/");
+        assertMatches("", "#", "+");
+        assertMatches("a", "#", "+");
+        assertMatches("a/x/b", "#");
+    }
+
+    @Test
+    public void testRandomFiltersMatchLikeSplit() {
+        Random random = new Random(42);
+        List<String> filters = AwsIotTopicFilterTest.randomTopics(random, new String[] { "a", "b", "", "+", "#" },
+                300);
+        List<String> topics = AwsIotTopicFilterTest.randomTopics(random, new String[] { "a", "b", "" }, 500);
+
+        Set<String> subscribed = new HashSet<>();
+        for (int i = 0; i < filters.size(); i++) {
+            String filter = filters.get(i);
+            if (i % 3 == 2 && subscribed.remove(filters.get(i / 2))) {
+                // unsubscribe some of the filters again
+                index.remove(new AwsIotTopicFilter(filters.get(i / 2)));
+            }
+            subscribed.add(filter);
+            index.put(new AwsIotTopicFilter(filter), filter);
+        }
+
+        for (String topic : topics) {
+            Set<String> expected = new HashSet<>();
+            for (String filter : subscribed) {
+                if (AwsIotTopicFilterTest.splitMatch(filter, topic)) {
+                    expected.add(filter);
+                }
+            }
+            assertEquals(topic, expected, new HashSet<>(index.match(topic)));
+        }
+    }
+
+    private void subscribe(String... filters) {
+        for (String filter : filters) {
+            index.put(new AwsIotTopicFilter(filter), filter);
+        }
+    }
+
+    private void unsubscribe(String filter) {
+        index.remove(new AwsIotTopicFilter(filter));
+    }
+
+    private void assertMatches(String topic, String... filters) {
+        Set<String> expected = new HashSet<>(Arrays.asList(filters));
+        for (String filter : expected) {
+            assertTrue("reference " + filter + " " + topic, AwsIotTopicFilterTest.splitMatch(filter, topic));
+        }
+        assertEquals(topic, expected, new HashSet<>(index.match(topic)));
+    }
+
+}
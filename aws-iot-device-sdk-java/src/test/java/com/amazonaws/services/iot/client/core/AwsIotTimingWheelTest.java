@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.services.iot.client.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AwsIotTimingWheelTest {
+
+    private ScheduledExecutorService scheduler;
+    private AwsIotTimingWheel wheel;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        wheel = new AwsIotTimingWheel(10, 8);
+    }
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testRestartAfterStop() throws InterruptedException {
+        wheel.start(scheduler, scheduler);
+        wheel.schedule(countDown(new CountDownLatch(1)), 10000);
+        assertEquals(1, wheel.stop().size());
+
+        wheel.start(scheduler, scheduler);
+        CountDownLatch fired = new CountDownLatch(1);
+        wheel.schedule(countDown(fired), 10);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRejectedExecutionKeepsTicking() throws InterruptedException {
+        wheel.start(scheduler, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+
+        CountDownLatch first = new CountDownLatch(1);
+        wheel.schedule(countDown(first), 10);
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch second = new CountDownLatch(1);
+        wheel.schedule(countDown(second), 10);
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+    }
+
+    private static Runnable countDown(final CountDownLatch latch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+    }
+
+}
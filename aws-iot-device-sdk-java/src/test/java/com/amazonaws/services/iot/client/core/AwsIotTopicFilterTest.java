@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.services.iot.client.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AwsIotTopicFilterTest {
+
+    private static final String[] FILTER_LEVELS = { "a", "b", "", "+", "#" };
+    private static final String[] TOPIC_LEVELS = { "a", "b", "" };
+
+    @Test
+    public void testMultiLevelWildcardNeedsParentLevel() {
+        assertMatch("a/#", "a/b", true);
+        assertMatch("a/#", "a/b/c", true);
+        assertMatch("a/#", "a/", false);
+        assertMatch("a/#", "a", false);
+        assertMatch("#", "a", true);
+        assertMatch("#", "", true);
+        assertMatch("#", "/", false);
+    }
+
+    @Test
+    public void testSeparatorOnlyFilter() {
+        assertMatch("/", "/", true);
+        assertMatch("/", "//", true);
+        assertMatch("/", "", false);
+        assertMatch("/", "a", false);
+    }
+
+    @Test
+    public void testTrailingAndEmptyLevels() {
+        assertMatch("a/b", "a/b/", true);
+        assertMatch("a/b/", "a/b", true);
+        assertMatch("a//b", "a//b", true);
+        assertMatch("a//b", "a/b", false);
+        assertMatch("/a", "a", false);
+        assertMatch("a/+", "a/", false);
+        assertMatch("a/+/b", "a//b", true);
+        assertMatch("+", "", true);
+    }
+
+    @Test
+    public void testMultiLevelWildcardNotLast() {
+        AwsIotTopicFilter filter = new AwsIotTopicFilter("a/#/b");
+
+        assertFalse(filter.isValid());
+        assertMatch("a/#/b", "a/x/b", false);
+        assertMatch("#/a", "a", false);
+        assertMatch("#/a", "b/a", false);
+    }
+
+    @Test
+    public void testRandomFiltersMatchLikeSplit() {
+        Random random = new Random(42);
+        List<String> filters = randomTopics(random, FILTER_LEVELS, 2000);
+        List<String> topics = randomTopics(random, TOPIC_LEVELS, 500);
+
+        for (String topicFilter : filters) {
+            AwsIotTopicFilter filter = new AwsIotTopicFilter(topicFilter);
+            for (String topic : topics) {
+                assertEquals(topicFilter + " " + topic, splitMatch(topicFilter, topic), filter.matches(topic));
+            }
+        }
+    }
+
+    private static void assertMatch(String topicFilter, String topic, boolean expected) {
+        assertEquals("reference " + topicFilter + " " + topic, expected, splitMatch(topicFilter, topic));
+        assertEquals(topicFilter + " " + topic, expected, new AwsIotTopicFilter(topicFilter).matches(topic));
+    }
+
+    static List<String> randomTopics(Random random, String[] levels, int count) {
+        List<String> topics = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder topic = new StringBuilder();
+            int levelCount = random.nextInt(5);
+            for (int j = 0; j < levelCount; j++) {
+                if (j > 0) {
+                    topic.append('/');
+                }
+                topic.append(levels[random.nextInt(levels.length)]);
+            }
+            if (random.nextInt(4) == 0) {
+                topic.append('/');
+            }
+            topics.add(topic.toString());
+        }
+        return topics;
+    }
+
+    /**
+     * The split based matching that
+     * {@link AbstractAwsIotClient#topicFilterMatch(String, String)} used
+     * before {@link AwsIotTopicFilter}, kept as the reference.
+     */
+    static boolean splitMatch(String topicFilter, String topic) {
+        if (topicFilter == null || topic == null) {
+            return false;
+        }
+
+        String[] filterTokens = topicFilter.split("/");
+        String[] topicTokens = topic.split("/");
+        if (filterTokens.length > topicTokens.length) {
+            return false;
+        }
+
+        for (int i = 0; i < filterTokens.length; i++) {
+            if (filterTokens[i].equals("#")) {
+                // '#' must be the last character
+                return ((i + 1) == filterTokens.length);
+            }
+
+            if (!(filterTokens[i].equals(topicTokens[i]) || filterTokens[i].equals("+"))) {
+                return false;
+            }
+        }
+
+        return (filterTokens.length == topicTokens.length);
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.services.iot.client.mqtt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AwsIotMqttFilePersistenceTest {
+
+    private static final String SERVER_URI = "ssl://localhost:8883";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReopenBySameClient() throws MqttPersistenceException {
+        AwsIotMqttFilePersistence persistence = new AwsIotMqttFilePersistence(folder.getRoot().getPath());
+
+        persistence.open("client-1", SERVER_URI);
+        persistence.open("client-1", SERVER_URI);
+        persistence.close();
+    }
+
+    @Test
+    public void testOpenByAnotherClientFails() throws MqttPersistenceException {
+        AwsIotMqttFilePersistence persistence = new AwsIotMqttFilePersistence(folder.getRoot().getPath());
+        persistence.open("client-1", SERVER_URI);
+
+        try {
+            persistence.open("client-2", SERVER_URI);
+            fail("Opening the persistence for another client should fail");
+        } catch (MqttPersistenceException e) {
+            assertEquals(MqttPersistenceException.REASON_CODE_PERSISTENCE_IN_USE, e.getReasonCode());
+        }
+
+        try {
+            persistence.open("client-1", "ssl://otherhost:8883");
+            fail("Opening the persistence for another server should fail");
+        } catch (MqttPersistenceException e) {
+            assertEquals(MqttPersistenceException.REASON_CODE_PERSISTENCE_IN_USE, e.getReasonCode());
+        }
+
+        persistence.close();
+        persistence.open("client-2", SERVER_URI);
+        assertNotNull(persistence.keys());
+        persistence.close();
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazonaws.services.iot.client.shadow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import com.amazonaws.services.iot.client.AWSIotDevice;
+import com.amazonaws.services.iot.client.AWSIotDeviceProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+
+public class AbstractAwsIotDeviceTest {
+
+    @Test
+    public void testPropertiesWithGeneratedCodec() {
+        AbstractAwsIotDevice device = new GeneratedDevice();
+
+        assertTrue(device.getCodec() instanceof GeneratedDevice_AwsIotCodec);
+        assertProperties(device);
+    }
+
+    @Test
+    public void testPropertiesWithReflectionCodec() {
+        AbstractAwsIotDevice device = new ReflectionDevice();
+
+        assertTrue(device.getCodec() instanceof AwsIotReflectionDeviceCodec);
+        assertProperties(device);
+    }
+
+    private static void assertProperties(AbstractAwsIotDevice device) {
+        assertEquals(new HashSet<>(Arrays.asList("reported", "both")), device.getReportedProperties().keySet());
+        assertEquals(new HashSet<>(Arrays.asList("updatable", "both")), device.getUpdatableProperties().keySet());
+    }
+
+    public static class ReflectionDevice extends AWSIotDevice {
+
+        @AWSIotDeviceProperty(allowUpdate = false)
+        private int reported;
+        @AWSIotDeviceProperty(enableReport = false)
+        private int updatable;
+        @AWSIotDeviceProperty(name = "both")
+        private int property;
+
+        public ReflectionDevice() {
+            super("thing");
+        }
+
+        public int getReported() {
+            return reported;
+        }
+
+        public void setReported(int reported) {
+            this.reported = reported;
+        }
+
+        public int getUpdatable() {
+            return updatable;
+        }
+
+        public void setUpdatable(int updatable) {
+            this.updatable = updatable;
+        }
+
+        public int getProperty() {
+            return property;
+        }
+
+        public void setProperty(int property) {
+            this.property = property;
+        }
+
+    }
+
+    public static class GeneratedDevice extends AWSIotDevice {
+
+        // the stub codec doesn't call any accessors
+        @AWSIotDeviceProperty(allowUpdate = false)
+        private int reported;
+        @AWSIotDeviceProperty(enableReport = false)
+        private int updatable;
+        @AWSIotDeviceProperty(name = "both")
+        private int property;
+
+        public GeneratedDevice() {
+            super("thing");
+        }
+
+    }
+
+    /**
+     * Stands in for the codec the annotation processor would generate for
+     * {@link GeneratedDevice}.
+     */
+    public static class GeneratedDevice_AwsIotCodec implements AwsIotDeviceCodec {
+
+        @Override
+        public boolean hasReportedProperties() {
+            return true;
+        }
+
+        @Override
+        public boolean isDefaultShadowUpdate() {
+            return true;
+        }
+
+        @Override
+        public void serialize(AbstractAwsIotDevice device, JsonGenerator generator) throws IOException {
+        }
+
+        @Override
+        public void applyDelta(AbstractAwsIotDevice device, JsonParser parser) throws IOException {
+        }
+
+    }
+
+}